@@ -0,0 +1,351 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the avalanche effect of SHA-256 over millions of input pairs instead of one.
+ *
+ * Each sample is a random input. Every one of its bits is flipped in turn and both inputs are
+ * hashed, which gives one pair per input bit. The two digests are XORed as four longs, and
+ * Long.bitCount of the result is the true bit-level Hamming distance (up to 256). The set bits
+ * of the XOR are also counted per (input bit, output bit). That count is the strict avalanche
+ * criterion (SAC) matrix: every entry should be close to 1/2, and so should every output bit's
+ * overall flip probability.
+ *
+ * Samples are handed out in chunks to a fixed pool of threads. Each thread fills its own
+ * counters and they are added together at the end, so the hot loop shares nothing. A sample's
+ * input comes from a SplitMix64 generator reseeded with a mix of the seed and the sample number,
+ * so the inputs, and the totals, do not depend on how samples were spread over threads.
+ *
+ * Bits are numbered from the most significant bit of byte 0, for inputs and digests alike.
+ */
+public class AvalancheAnalyzer {
+
+    private static final int DIGEST_BITS = 256;
+    private static final int DIGEST_WORDS = DIGEST_BITS / 64;
+    private static final int CHUNK_SIZE = 256;
+    // Every thread keeps an inputLength * 8 x 256 SAC matrix of longs: 16 KiB per input byte.
+    static final int MAX_INPUT_LENGTH = 4096;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    /**
+     * Counters for one thread, or all of them once merged.
+     */
+    public static class Result {
+        public final int inputBits;
+        public long pairs;
+        public final long[] distanceHistogram = new long[DIGEST_BITS + 1];
+        public final long[] outputBitFlips = new long[DIGEST_BITS];
+        /** Row per input bit, column per output bit. */
+        public final long[] sac;
+        public long elapsedNanos;
+
+        Result(int inputBits) {
+            this.inputBits = inputBits;
+            this.sac = new long[inputBits * DIGEST_BITS];
+        }
+
+        void add(Result other) {
+            pairs += other.pairs;
+            for (int i = 0; i < distanceHistogram.length; i++) distanceHistogram[i] += other.distanceHistogram[i];
+            for (int i = 0; i < outputBitFlips.length; i++) outputBitFlips[i] += other.outputBitFlips[i];
+            for (int i = 0; i < sac.length; i++) sac[i] += other.sac[i];
+        }
+
+        public double meanDistance() {
+            double sum = 0;
+            for (int d = 0; d < distanceHistogram.length; d++) sum += (double) d * distanceHistogram[d];
+            return sum / pairs;
+        }
+
+        public double distanceStdDev() {
+            double mean = meanDistance();
+            double sum = 0;
+            for (int d = 0; d < distanceHistogram.length; d++) sum += (d - mean) * (d - mean) * distanceHistogram[d];
+            return Math.sqrt(sum / pairs);
+        }
+
+        /**
+         * @return How often output bit j flipped, over all pairs.
+         */
+        public double flipProbability(int outputBit) {
+            return (double) outputBitFlips[outputBit] / pairs;
+        }
+
+        /**
+         * @return How often output bit j flipped when input bit i was flipped.
+         */
+        public double sacProbability(int inputBit, int outputBit) {
+            return (double) sac[inputBit * DIGEST_BITS + outputBit] / (pairs / inputBits);
+        }
+    }
+
+    /**
+     * Hashes at least the given number of single-bit-flip pairs of inputs of inputLength bytes.
+     * The count is rounded up to a whole number of samples (inputLength * 8 pairs each).
+     * @throws IllegalArgumentException If inputLength, minPairs or threads is below 1, inputLength
+     *                                  is above MAX_INPUT_LENGTH, or the threads' SAC matrices would
+     *                                  take more than half the heap.
+     */
+    public static Result analyze(int inputLength, long minPairs, int threads, long seed) throws InterruptedException {
+        if (inputLength < 1 || inputLength > MAX_INPUT_LENGTH) {
+            throw new IllegalArgumentException("Input length must be between 1 and " + MAX_INPUT_LENGTH + " bytes, not " + inputLength);
+        }
+        if (minPairs < 1) {
+            throw new IllegalArgumentException("At least one pair must be hashed, not " + minPairs);
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed, not " + threads);
+        }
+        int inputBits = inputLength * 8;
+        // One matrix per thread plus the total they are added into.
+        long counterBytes = (threads + 1L) * inputBits * DIGEST_BITS * Long.BYTES;
+        long budget = Runtime.getRuntime().maxMemory() / 2;
+        if (counterBytes > budget) {
+            throw new IllegalArgumentException(threads + " threads with " + inputLength + "-byte inputs need "
+                    + (counterBytes >> 20) + " MiB of SAC counters, more than the " + (budget >> 20)
+                    + " MiB allowed; use fewer threads or shorter inputs");
+        }
+        long samples = (minPairs + inputBits - 1) / inputBits;
+        AtomicLong nextSample = new AtomicLong();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<Result>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                MessageDigest digest = Hashing.Algorithm.SHA_256.newDigest();
+                workers.add(executor.submit(() -> work(digest, inputLength, samples, nextSample, seed)));
+            }
+            Result total = new Result(inputBits);
+            for (Future<Result> worker : workers) {
+                total.add(worker.get());
+            }
+            total.elapsedNanos = System.nanoTime() - start;
+            return total;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Claims chunks of samples until none are left. A sample's input depends only on the seed and
+    // its number, so the totals are the same for any thread count.
+    private static Result work(MessageDigest digest, int inputLength, long samples, AtomicLong nextSample, long seed)
+            throws DigestException {
+        int inputBits = inputLength * 8;
+        Result result = new Result(inputBits);
+        SplitMix random = new SplitMix();
+        byte[] input = new byte[inputLength];
+        byte[] base = new byte[32];
+        byte[] flipped = new byte[32];
+        long[] sac = result.sac;
+        long[] outputBitFlips = result.outputBitFlips;
+        long[] histogram = result.distanceHistogram;
+
+        long from;
+        while ((from = nextSample.getAndAdd(CHUNK_SIZE)) < samples) {
+            long to = Math.min(samples, from + CHUNK_SIZE);
+            for (long sample = from; sample < to; sample++) {
+                random.reset(SplitMix.mix(seed + sample * GOLDEN_GAMMA));
+                random.nextBytes(input);
+                digest.update(input);
+                digest.digest(base, 0, 32);
+
+                for (int bit = 0; bit < inputBits; bit++) {
+                    byte mask = (byte) (0x80 >>> (bit & 7));
+                    input[bit >>> 3] ^= mask;
+                    digest.update(input);
+                    digest.digest(flipped, 0, 32);
+                    input[bit >>> 3] ^= mask;
+
+                    int distance = 0;
+                    int row = bit * DIGEST_BITS;
+                    for (int w = 0; w < DIGEST_WORDS; w++) {
+                        long diff = (long) LONGS.get(base, w * 8) ^ (long) LONGS.get(flipped, w * 8);
+                        distance += Long.bitCount(diff);
+                        while (diff != 0) {
+                            int outputBit = w * 64 + Long.numberOfLeadingZeros(diff);
+                            sac[row + outputBit]++;
+                            outputBitFlips[outputBit]++;
+                            diff &= ~(Long.MIN_VALUE >>> Long.numberOfLeadingZeros(diff));
+                        }
+                    }
+                    histogram[distance]++;
+                }
+                result.pairs += inputBits;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * SplitMix64, the generator behind SplittableRandom, with a reset so one instance per worker
+     * can serve every sample.
+     */
+    private static final class SplitMix {
+        private long state;
+
+        void reset(long seed) {
+            state = seed;
+        }
+
+        void nextBytes(byte[] bytes) {
+            int i = 0;
+            for (; i + 8 <= bytes.length; i += 8) {
+                LONGS.set(bytes, i, nextLong());
+            }
+            if (i < bytes.length) {
+                long last = nextLong();
+                for (; i < bytes.length; i++, last >>>= 8) {
+                    bytes[i] = (byte) last;
+                }
+            }
+        }
+
+        long nextLong() {
+            state += GOLDEN_GAMMA;
+            return mix(state);
+        }
+
+        static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+    /**
+     * Bit-level Hamming distance of two byte arrays. Bytes only one of them has count as all
+     * different, so arrays of different lengths can be compared.
+     */
+    public static int bitDistance(byte[] a, byte[] b) {
+        int common = Math.min(a.length, b.length);
+        int distance = 0;
+        int i = 0;
+        for (; i + 8 <= common; i += 8) {
+            distance += Long.bitCount((long) LONGS.get(a, i) ^ (long) LONGS.get(b, i));
+        }
+        for (; i < common; i++) {
+            distance += Integer.bitCount((a[i] ^ b[i]) & 0xff);
+        }
+        return distance + 8 * (Math.max(a.length, b.length) - common);
+    }
+
+    static void printReport(Result result) {
+        double seconds = result.elapsedNanos / 1e9;
+        System.out.println("--- Avalanche analysis of SHA-256, " + result.inputBits + "-bit inputs ---");
+        if (result.pairs == 0) {
+            System.out.println("No pairs were hashed.");
+            return;
+        }
+        System.out.println("Pairs hashed: " + result.pairs + " in " + String.format("%.2f", seconds) + " s ("
+                + String.format("%.0f", result.pairs / seconds) + " pairs/s)");
+
+        int min = 0;
+        while (result.distanceHistogram[min] == 0) min++;
+        int max = DIGEST_BITS;
+        while (result.distanceHistogram[max] == 0) max--;
+        System.out.println(String.format("Hamming distance: mean %.3f / %d (ideal %d), std dev %.3f (ideal %.3f), range %d..%d",
+                result.meanDistance(), DIGEST_BITS, DIGEST_BITS / 2, result.distanceStdDev(), Math.sqrt(DIGEST_BITS) / 2, min, max));
+
+        double lowest = 1;
+        double highest = 0;
+        int lowestBit = 0;
+        int highestBit = 0;
+        for (int j = 0; j < DIGEST_BITS; j++) {
+            double p = result.flipProbability(j);
+            if (p < lowest) { lowest = p; lowestBit = j; }
+            if (p > highest) { highest = p; highestBit = j; }
+        }
+        System.out.println(String.format("Per-output-bit flip probability: min %.5f (bit %d), max %.5f (bit %d), ideal 0.5",
+                lowest, lowestBit, highest, highestBit));
+
+        // Each SAC entry is a binomial proportion over the samples; count entries beyond 3 sigma.
+        long samples = result.pairs / result.inputBits;
+        double sigma = Math.sqrt(0.25 / samples);
+        double worst = 0;
+        long outside = 0;
+        for (int i = 0; i < result.inputBits; i++) {
+            for (int j = 0; j < DIGEST_BITS; j++) {
+                double deviation = Math.abs(result.sacProbability(i, j) - 0.5);
+                worst = Math.max(worst, deviation);
+                if (deviation > 3 * sigma) outside++;
+            }
+        }
+        long entries = (long) result.inputBits * DIGEST_BITS;
+        System.out.println(String.format("SAC matrix (%d x %d, %d samples per entry): worst |p - 0.5| = %.5f (%.1f sigma), "
+                + "%d entries beyond 3 sigma (%.3f%%, about 0.27%% expected by chance)",
+                result.inputBits, DIGEST_BITS, samples, worst, worst / sigma, outside, 100.0 * outside / entries));
+    }
+
+    // One row per input bit, one column per output bit.
+    static void writeSac(Result result, Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            for (int i = 0; i < result.inputBits; i++) {
+                StringBuilder row = new StringBuilder();
+                for (int j = 0; j < DIGEST_BITS; j++) {
+                    if (j > 0) row.append(',');
+                    row.append(String.format("%.5f", result.sacProbability(i, j)));
+                }
+                out.println(row);
+            }
+        }
+    }
+
+    private static final String USAGE =
+            "Usage: java AvalancheAnalyzer [--pairs N] [--input-bytes N] [--threads N] [--seed N] [--sac-csv FILE]";
+
+    /**
+     * java AvalancheAnalyzer [--pairs N] [--input-bytes N] [--threads N] [--seed N] [--sac-csv FILE]
+     */
+    public static void main(String[] args) throws Exception {
+        long pairs = 2_000_000;
+        int inputBytes = 32;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        Path sacFile = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--pairs": pairs = Long.parseLong(args[++i]); break;
+                case "--input-bytes": inputBytes = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--sac-csv": sacFile = Path.of(args[++i]); break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.err.println(USAGE);
+                    return;
+            }
+        }
+
+        Result result;
+        try {
+            result = analyze(inputBytes, pairs, threads, seed);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return;
+        }
+        printReport(result);
+        if (sacFile != null) {
+            writeSac(result, sacFile);
+            System.out.println("SAC matrix written to " + sacFile);
+        }
+    }
+}
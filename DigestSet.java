@@ -0,0 +1,180 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+/**
+ * A compact set of fixed-length digests for checking a freshly computed hash against
+ * many targets at once.
+ *
+ * Everything lives in primitive arrays: the digests themselves are packed into one byte[],
+ * and an open-addressed table (linear probing) maps the first 8 bytes of a digest to its
+ * entry number. Digests are already uniformly random, so the prefix makes a good table key
+ * and a full compare is only needed when the prefix matches.
+ * An optional Bloom filter, built from a different part of the digest, can sit in front of
+ * the table so that almost every miss is answered from a small bit array.
+ */
+public class DigestSet {
+
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    // Bloom filter sizing: 16 bits and 3 probes per entry gives roughly a 0.2% false positive rate.
+    private static final int BLOOM_BITS_PER_ENTRY = 16;
+    private static final int BLOOM_PROBES = 3;
+
+    private final int digestLength;
+    private final int capacity;
+    private final byte[] digests;      // entry i occupies [i * digestLength, (i + 1) * digestLength)
+    private final long[] slotPrefix;   // prefix stored in each table slot
+    private final int[] slotEntry;     // entry number + 1 in each table slot, 0 means empty
+    private final int mask;
+    private final long[] bloom;        // null when the Bloom filter is disabled
+    private final int bloomMask;
+    private int size;
+
+    /**
+     * @param capacity     The maximum number of digests the set will hold.
+     * @param digestLength The length of every digest in bytes (at least 16).
+     * @param useBloom     Whether to put a Bloom filter in front of the table.
+     */
+    public DigestSet(int capacity, int digestLength, boolean useBloom) {
+        if (digestLength < 16) {
+            throw new IllegalArgumentException("Digests must be at least 16 bytes long");
+        }
+        this.digestLength = digestLength;
+        this.capacity = capacity;
+        this.digests = new byte[capacity * digestLength];
+
+        // Keep the table at most half full so probe chains stay short.
+        int slots = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        this.slotPrefix = new long[slots];
+        this.slotEntry = new int[slots];
+        this.mask = slots - 1;
+
+        if (useBloom) {
+            int bits = Integer.highestOneBit(Math.max(64, capacity * BLOOM_BITS_PER_ENTRY) - 1) << 1;
+            this.bloom = new long[bits >>> 6];
+            this.bloomMask = bits - 1;
+        } else {
+            this.bloom = null;
+            this.bloomMask = 0;
+        }
+    }
+
+    /**
+     * Reads one hex digest per line. Blank lines and lines starting with '#' are skipped.
+     */
+    public static DigestSet load(Path file, int digestLength, boolean useBloom) throws IOException {
+        HexFormat hex = HexFormat.of();
+        long lines;
+        try (Stream<String> stream = Files.lines(file, StandardCharsets.UTF_8)) {
+            lines = stream.count();
+        }
+        DigestSet set = new DigestSet((int) lines, digestLength, useBloom);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                byte[] digest = hex.parseHex(line.toLowerCase());
+                if (digest.length != digestLength) {
+                    throw new IOException("Expected a " + digestLength + "-byte digest but got: " + line);
+                }
+                set.add(digest);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Adds a digest to the set.
+     * @return The entry number of the digest; an existing entry keeps its original number.
+     */
+    public int add(byte[] digest) {
+        int existing = indexOf(digest, 0);
+        if (existing >= 0) return existing;
+        if (size == capacity) {
+            throw new IllegalStateException("DigestSet is full (capacity " + capacity + ")");
+        }
+
+        int entry = size++;
+        System.arraycopy(digest, 0, digests, entry * digestLength, digestLength);
+
+        long prefix = (long) LONG_VIEW.get(digest, 0);
+        int slot = slotFor(prefix);
+        while (slotEntry[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slotPrefix[slot] = prefix;
+        slotEntry[slot] = entry + 1;
+
+        if (bloom != null) {
+            long h = (long) LONG_VIEW.get(digest, 8);
+            for (int i = 0; i < BLOOM_PROBES; i++) {
+                int bit = bloomBit(h, i);
+                bloom[bit >>> 6] |= 1L << bit;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Looks up the digest stored at digest[offset .. offset + digestLength).
+     * @return Its entry number, or -1 if it is not in the set.
+     */
+    public int indexOf(byte[] digest, int offset) {
+        if (bloom != null) {
+            long h = (long) LONG_VIEW.get(digest, offset + 8);
+            for (int i = 0; i < BLOOM_PROBES; i++) {
+                int bit = bloomBit(h, i);
+                if ((bloom[bit >>> 6] & (1L << bit)) == 0) return -1;
+            }
+        }
+
+        long prefix = (long) LONG_VIEW.get(digest, offset);
+        for (int slot = slotFor(prefix); slotEntry[slot] != 0; slot = (slot + 1) & mask) {
+            if (slotPrefix[slot] == prefix) {
+                int entry = slotEntry[slot] - 1;
+                int start = entry * digestLength;
+                if (Arrays.equals(digests, start, start + digestLength, digest, offset, offset + digestLength)) {
+                    return entry;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return A copy of the digest stored under the given entry number.
+     */
+    public byte[] get(int entry) {
+        byte[] digest = new byte[digestLength];
+        System.arraycopy(digests, entry * digestLength, digest, 0, digestLength);
+        return digest;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int digestLength() {
+        return digestLength;
+    }
+
+    // Double hashing: the two halves of the second digest word give every probe position.
+    private int bloomBit(long h, int probe) {
+        return ((int) h + probe * (int) (h >>> 32)) & bloomMask;
+    }
+
+    private int slotFor(long prefix) {
+        // Fold the high bits in as well, in case the digests are not as random as expected.
+        return (int) (prefix ^ (prefix >>> 32)) & mask;
+    }
+}
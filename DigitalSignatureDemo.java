@@ -1,4 +1,5 @@
 import java.security.*;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Scanner;
 
@@ -6,10 +7,26 @@ public class DigitalSignatureDemo {
 
     public static void main(String[] args) throws Exception {
 
+        // --bench [millis] [schemes...] compares the signature schemes.
+        if (args.length > 0 && args[0].equals("--bench")) {
+            SignatureScheme.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // --batch [messages] [batch size] [window millis] [scheme] signs Merkle roots of batches.
+        if (args.length > 0 && args[0].equals("--batch")) {
+            SignedMerkleBatcher.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        // Other arguments run the batch pipeline instead: [--threads N] [--count N] [--scheme LABEL] [FILE]
+        if (args.length > 0) {
+            SignaturePipeline.main(args);
+            return;
+        }
+
         // 1. Generate a public-private key pair using RSA algorithm.
-        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
-        keyGen.initialize(2048); // Use a 2048-bit key size for security
-        KeyPair keyPair = keyGen.generateKeyPair();
+        // Use a 2048-bit key size for security; SignatureScheme lists the other schemes.
+        SignatureScheme scheme = SignatureScheme.RSA_2048;
+        KeyPair keyPair = scheme.generateKeyPair();
         PrivateKey privateKey = keyPair.getPrivate();
         PublicKey publicKey = keyPair.getPublic();
 
@@ -21,15 +38,14 @@ public class DigitalSignatureDemo {
 
         // 3. Sign the message using the private key.
         // The "SHA256withRSA" algorithm hashes the message with SHA-256 then signs the hash with RSA.
-        Signature signature = Signature.getInstance("SHA256withRSA");
-        signature.initSign(privateKey);
-        signature.update(message.getBytes());
-        byte[] digitalSignature = signature.sign();
+        Signature signer = scheme.signer(privateKey);
+        signer.update(message.getBytes());
+        byte[] digitalSignature = signer.sign();
 
         // 4. Verify the signature against the original message using the public key.
-        signature.initVerify(publicKey);
-        signature.update(message.getBytes());
-        boolean isVerified = signature.verify(digitalSignature);
+        Signature verifier = scheme.verifier(publicKey);
+        verifier.update(message.getBytes());
+        boolean isVerified = verifier.verify(digitalSignature);
 
         // --- Output all the information ---
         System.out.println("\n--- Digital Signature Demonstration ---");
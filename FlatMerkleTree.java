@@ -0,0 +1,305 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A Merkle tree that is built once and then serves any number of proofs without rehashing.
+ *
+ * Every level is kept as a flat byte[] of 32-byte digests (levels[0] is the leaves, the last
+ * level is the root), and a small open-addressed table maps a leaf digest to its index. A proof
+ * is then just one sibling read per level: O(log n), no hashing and no scan of the leaves.
+ *
+ * The tree can also grow and change in place. append and update rehash only the nodes on the
+ * leaf's path to the root, so each call costs O(log n) hashes instead of a full rebuild. A
+ * level of n nodes always has ceil(n / 2) parents, so an appended leaf changes nothing off its
+ * own path. Level arrays are over-allocated and doubled as the tree grows.
+ *
+ * Not thread-safe.
+ */
+public class FlatMerkleTree {
+
+    private static final int HASH_LENGTH = MerkleEngine.HASH_LENGTH;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final MerkleEngine.Mode mode;
+    private byte[][] levels;         // may hold spare capacity beyond levelSize(level) nodes
+    private int height;              // levels in use, leaves and root included
+    private int leafCount;
+    private int[] leafSlots;         // leaf index + 1 per slot, 0 means empty
+    private int slotMask;
+
+    /**
+     * Creates an empty tree to append to.
+     */
+    public FlatMerkleTree(MerkleEngine.Mode mode) {
+        this(mode, new byte[][] { new byte[INITIAL_CAPACITY * HASH_LENGTH] }, 0, 0);
+    }
+
+    private FlatMerkleTree(MerkleEngine.Mode mode, byte[][] levels, int height, int leafCount) {
+        this.mode = mode;
+        this.levels = levels;
+        this.height = height;
+        this.leafCount = leafCount;
+        rebuildLeafIndex(Math.max(INITIAL_CAPACITY, leafCount));
+    }
+
+    /**
+     * Builds the whole tree once, hashing wide levels in parallel.
+     * @return The tree, or null for an empty or null list (there is no root to prove against).
+     */
+    public static FlatMerkleTree build(List<String> dataItems, MerkleEngine.Mode mode) {
+        if (dataItems == null || dataItems.isEmpty()) return null;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        List<byte[]> levels = new ArrayList<>();
+        byte[] level = MerkleEngine.parallelHashLeaves(dataItems, mode, pool);
+        levels.add(level);
+        while (level.length > HASH_LENGTH) {
+            level = MerkleEngine.parallelNextLevel(level, mode, pool);
+            levels.add(level);
+        }
+        return new FlatMerkleTree(mode, levels.toArray(new byte[0][]), levels.size(), dataItems.size());
+    }
+
+    public MerkleEngine.Mode mode() {
+        return mode;
+    }
+
+    public int size() {
+        return leafCount;
+    }
+
+    /**
+     * @return The root, or null while the tree is empty.
+     */
+    public byte[] root() {
+        return leafCount == 0 ? null : node(height - 1, 0);
+    }
+
+    public String rootHex() {
+        return MerkleEngine.toHex(root());
+    }
+
+    /**
+     * @return The number of levels, leaves and root included.
+     */
+    public int levelCount() {
+        return height;
+    }
+
+    public int levelSize(int level) {
+        // Every level has ceil(size / 2) parents, so level l has ceil(leafCount / 2^l) nodes.
+        return (int) ((leafCount + (1L << level) - 1) >>> level);
+    }
+
+    /**
+     * Adds an item as the next leaf and rehashes its path to the root.
+     * @return The new leaf's index.
+     */
+    public int append(String item) {
+        int index = leafCount;
+        leafCount++;
+        height = levelCountFor(leafCount);
+        ensureCapacity();
+
+        MerkleEngine.forCurrentThread(mode).hashLeaf(item, levels[0], index * HASH_LENGTH);
+        if (leafCount * 2 > leafSlots.length) {
+            rebuildLeafIndex(leafCount * 2);
+        } else {
+            indexLeaf(index);
+        }
+        rehashPath(index);
+        return index;
+    }
+
+    /**
+     * Replaces the item at a leaf and rehashes its path to the root.
+     */
+    public void update(int index, String item) {
+        checkIndex(index);
+        unindexLeaf(index);
+        MerkleEngine.forCurrentThread(mode).hashLeaf(item, levels[0], index * HASH_LENGTH);
+        indexLeaf(index);
+        rehashPath(index);
+    }
+
+    // Recomputes every ancestor of a leaf, pairing the last node of an odd level with itself.
+    private void rehashPath(int index) {
+        MerkleEngine engine = MerkleEngine.forCurrentThread(mode);
+        for (int level = 0; level < height - 1; level++) {
+            int parent = index / 2;
+            int left = 2 * parent;
+            int right = left + 1 < levelSize(level) ? left + 1 : left;
+            engine.hashPair(levels[level], left * HASH_LENGTH, levels[level], right * HASH_LENGTH,
+                    levels[level + 1], parent * HASH_LENGTH);
+            index = parent;
+        }
+    }
+
+    private static int levelCountFor(int leaves) {
+        if (leaves == 0) return 0;
+        return 33 - Integer.numberOfLeadingZeros(leaves - 1);
+    }
+
+    // Makes sure every level in use has room for its nodes, doubling arrays that are full.
+    private void ensureCapacity() {
+        if (levels.length < height) {
+            levels = Arrays.copyOf(levels, height);
+        }
+        for (int level = 0; level < height; level++) {
+            int needed = levelSize(level) * HASH_LENGTH;
+            if (levels[level] == null) {
+                levels[level] = new byte[Math.max(needed, HASH_LENGTH * 2)];
+            } else if (levels[level].length < needed) {
+                levels[level] = Arrays.copyOf(levels[level], Math.max(needed, levels[level].length * 2));
+            }
+        }
+    }
+
+    /**
+     * @return A copy of node index on the given level (level 0 is the leaves).
+     */
+    public byte[] node(int level, int index) {
+        return MerkleEngine.node(levels[level], index);
+    }
+
+    // The backing array of a level, not copied; only the first levelSize(level) nodes are in use.
+    byte[] level(int level) {
+        return levels[level];
+    }
+
+    /**
+     * @return The index of the first leaf for this item, or -1 if the item is not in the tree.
+     */
+    public int indexOf(String item) {
+        byte[] leafHash = new byte[HASH_LENGTH];
+        MerkleEngine.forCurrentThread(mode).hashLeaf(item, leafHash, 0);
+        return indexOfLeafHash(leafHash);
+    }
+
+    /**
+     * @return The index of the first leaf with this digest, or -1 if there is none.
+     */
+    public int indexOfLeafHash(byte[] leafHash) {
+        byte[] leaves = levels[0];
+        int first = -1;
+        // Duplicate items each have their own slot, so keep probing for the lowest index.
+        for (int slot = slotFor(leafHash, 0); leafSlots[slot] != 0; slot = (slot + 1) & slotMask) {
+            int leaf = leafSlots[slot] - 1;
+            if ((first < 0 || leaf < first)
+                    && Arrays.equals(leaves, leaf * HASH_LENGTH, (leaf + 1) * HASH_LENGTH, leafHash, 0, HASH_LENGTH)) {
+                first = leaf;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Same proof as MerkleTree.generateMerkleProof, read from the stored levels.
+     * @return The proof, or null if the item is not in the tree.
+     */
+    public List<MerkleTree.ProofNode> proofFor(String item) {
+        int index = indexOf(item);
+        return index < 0 ? null : proofFor(index);
+    }
+
+    /**
+     * Collects the sibling of the leaf's path node on every level below the root.
+     * On an odd-sized level the last node is its own sibling, as in the tree construction.
+     */
+    public List<MerkleTree.ProofNode> proofFor(int index) {
+        checkIndex(index);
+        List<MerkleTree.ProofNode> proof = new ArrayList<>(height - 1);
+        for (int level = 0; level < height - 1; level++) {
+            int sibling = siblingIndex(level, index);
+            MerkleTree.ProofNode.Position position = (index % 2 == 0)
+                    ? MerkleTree.ProofNode.Position.RIGHT
+                    : MerkleTree.ProofNode.Position.LEFT;
+            proof.add(new MerkleTree.ProofNode(MerkleEngine.toHex(node(level, sibling)), position));
+            index /= 2;
+        }
+        return proof;
+    }
+
+    /**
+     * The same siblings as proofFor(index), as raw digests packed back to back. The positions
+     * follow from the bits of index: sibling on level l is on the right when bit l is 0.
+     */
+    public byte[] proofDigests(int index) {
+        checkIndex(index);
+        byte[] proof = new byte[(height - 1) * HASH_LENGTH];
+        for (int level = 0; level < height - 1; level++) {
+            System.arraycopy(levels[level], siblingIndex(level, index) * HASH_LENGTH, proof, level * HASH_LENGTH, HASH_LENGTH);
+            index /= 2;
+        }
+        return proof;
+    }
+
+    /**
+     * One combined proof for several leaves. See MerkleMultiproof.
+     */
+    public MerkleMultiproof multiproof(int... indices) {
+        return MerkleMultiproof.create(this, indices);
+    }
+
+    /**
+     * The leaves where this tree and another differ. See MerkleDiff.
+     */
+    public int[] diff(FlatMerkleTree other) {
+        return MerkleDiff.compare(this, other).leaves();
+    }
+
+    private int siblingIndex(int level, int index) {
+        if (index % 2 == 1) return index - 1;
+        return index + 1 < levelSize(level) ? index + 1 : index;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= leafCount) {
+            throw new IndexOutOfBoundsException("Leaf " + index + " of " + leafCount);
+        }
+    }
+
+    private void rebuildLeafIndex(int expectedLeaves) {
+        int slots = Integer.highestOneBit(Math.max(2, expectedLeaves) * 2 - 1) << 1;
+        leafSlots = new int[slots];
+        slotMask = slots - 1;
+        for (int i = 0; i < leafCount; i++) {
+            indexLeaf(i);
+        }
+    }
+
+    // Adds a leaf to the lookup table (linear probing).
+    private void indexLeaf(int leaf) {
+        int slot = slotFor(levels[0], leaf * HASH_LENGTH);
+        while (leafSlots[slot] != 0) {
+            slot = (slot + 1) & slotMask;
+        }
+        leafSlots[slot] = leaf + 1;
+    }
+
+    // Removes a leaf from the lookup table while its old digest is still in place. Entries after
+    // the gap are shifted back when their home slot allows it, so no probe chain is broken.
+    private void unindexLeaf(int leaf) {
+        int hole = slotFor(levels[0], leaf * HASH_LENGTH);
+        while (leafSlots[hole] != leaf + 1) {
+            hole = (hole + 1) & slotMask;
+        }
+        for (int next = (hole + 1) & slotMask; leafSlots[next] != 0; next = (next + 1) & slotMask) {
+            int home = slotFor(levels[0], (leafSlots[next] - 1) * HASH_LENGTH);
+            if (((next - home) & slotMask) >= ((next - hole) & slotMask)) {
+                leafSlots[hole] = leafSlots[next];
+                hole = next;
+            }
+        }
+        leafSlots[hole] = 0;
+    }
+
+    // Leaf digests are uniformly random, so their first four bytes are a good table hash.
+    private int slotFor(byte[] digest, int offset) {
+        int h = (digest[offset] & 0xff) << 24 | (digest[offset + 1] & 0xff) << 16
+                | (digest[offset + 2] & 0xff) << 8 | (digest[offset + 3] & 0xff);
+        return h & slotMask;
+    }
+}
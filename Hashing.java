@@ -0,0 +1,323 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * The hashing every demo shares: pooled digests, hashing of buffers and files, and hex output.
+ *
+ * MessageDigest.getInstance walks the security providers on every call, so each thread instead
+ * keeps one digest per algorithm, cloned from a prototype the first time it is needed. The
+ * digest is reset and reused for each hash. Large inputs are hashed incrementally: a ByteBuffer
+ * goes straight into the digest, and a file is hashed through memory-mapped windows without
+ * being read onto the heap. Hex is written from a 256-entry lookup table, two characters per
+ * byte, straight into the bytes of the String.
+ *
+ * Every algorithm here has a 32-byte digest, so any of them can replace SHA-256 in the Merkle and
+ * pre-image code. main reports the throughput of each for small and large inputs.
+ */
+public final class Hashing {
+
+    /**
+     * The supported hash functions, all with 32-byte digests.
+     */
+    public enum Algorithm {
+        SHA_256("sha-256", "SHA-256"),
+        /** SHA-512 truncated to 256 bits; faster than SHA-256 on 64-bit CPUs without SHA extensions. */
+        SHA_512_256("sha-512/256", "SHA-512/256"),
+        SHA3_256("sha3-256", "SHA3-256");
+
+        private final String label;
+        private final String jcaName;
+        // Looked up on first use, so a JDK without one algorithm can still use the others.
+        private volatile MessageDigest prototype;
+
+        Algorithm(String label, String jcaName) {
+            this.label = label;
+            this.jcaName = jcaName;
+        }
+
+        /**
+         * @return The name used on the command line, e.g. "sha3-256".
+         */
+        public String label() {
+            return label;
+        }
+
+        /**
+         * @return The MessageDigest algorithm name, e.g. "SHA3-256".
+         */
+        public String jcaName() {
+            return jcaName;
+        }
+
+        /**
+         * A new digest of its own, for code that keeps one per worker. Cloning the prototype is
+         * cheaper than a provider lookup.
+         * @throws IllegalStateException If this JDK does not provide the algorithm.
+         */
+        public MessageDigest newDigest() {
+            MessageDigest prototype = this.prototype;
+            if (prototype == null) {
+                // Racing threads may each look it up once; any of the results will do.
+                prototype = lookup();
+                this.prototype = prototype;
+            }
+            try {
+                return (MessageDigest) prototype.clone();
+            } catch (CloneNotSupportedException e) {
+                return lookup();
+            }
+        }
+
+        private MessageDigest lookup() {
+            try {
+                return MessageDigest.getInstance(jcaName);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(jcaName + " is not available in this JDK", e);
+            }
+        }
+
+        /**
+         * @throws IllegalArgumentException If no algorithm has this label.
+         */
+        public static Algorithm fromLabel(String label) {
+            for (Algorithm algorithm : values()) {
+                if (algorithm.label.equalsIgnoreCase(label) || algorithm.jcaName.equalsIgnoreCase(label)) return algorithm;
+            }
+            throw new IllegalArgumentException("Unknown hash algorithm '" + label + "'; expected sha-256, sha-512/256 or sha3-256");
+        }
+    }
+
+    public static final int HASH_LENGTH = 32;
+
+    // Size of each mapped window of a file.
+    private static final long WINDOW = 64L << 20;
+
+    // HEX_PAIRS[2 * b] and HEX_PAIRS[2 * b + 1] are the two lowercase hex digits of byte b.
+    private static final byte[] HEX_PAIRS = new byte[512];
+
+    static {
+        byte[] digits = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        for (int b = 0; b < 256; b++) {
+            HEX_PAIRS[2 * b] = digits[b >>> 4];
+            HEX_PAIRS[2 * b + 1] = digits[b & 0x0f];
+        }
+    }
+
+    private static final ThreadLocal<MessageDigest[]> DIGESTS =
+            ThreadLocal.withInitial(() -> new MessageDigest[Algorithm.values().length]);
+
+    private Hashing() {
+    }
+
+    /**
+     * This thread's digest for the algorithm, reset and ready for use. It is shared by every
+     * call on this thread, so finish with it before calling another Hashing method.
+     */
+    public static MessageDigest digest(Algorithm algorithm) {
+        MessageDigest[] digests = DIGESTS.get();
+        MessageDigest digest = digests[algorithm.ordinal()];
+        if (digest == null) {
+            digest = algorithm.newDigest();
+            digests[algorithm.ordinal()] = digest;
+        } else {
+            digest.reset();
+        }
+        return digest;
+    }
+
+    public static byte[] hash(Algorithm algorithm, byte[] data) {
+        return digest(algorithm).digest(data);
+    }
+
+    /**
+     * Hashes the item's UTF-8 bytes.
+     */
+    public static byte[] hash(Algorithm algorithm, String item) {
+        return hash(algorithm, item.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the digest of data[offset .. offset + length) to out[outOffset ..] without allocating.
+     */
+    public static void hash(Algorithm algorithm, byte[] data, int offset, int length, byte[] out, int outOffset) {
+        MessageDigest digest = digest(algorithm);
+        digest.update(data, offset, length);
+        try {
+            digest.digest(out, outOffset, HASH_LENGTH);
+        } catch (DigestException e) {
+            throw new IllegalArgumentException("No room for a digest at offset " + outOffset, e);
+        }
+    }
+
+    /**
+     * Hashes the buffer's remaining bytes, leaving its position at its limit. Direct and mapped
+     * buffers are read in place.
+     */
+    public static byte[] hash(Algorithm algorithm, ByteBuffer data) {
+        MessageDigest digest = digest(algorithm);
+        digest.update(data);
+        return digest.digest();
+    }
+
+    /**
+     * Hashes a file of any size through memory-mapped windows.
+     */
+    public static byte[] hashFile(Algorithm algorithm, Path file) throws IOException {
+        return hashFile(algorithm, file, WINDOW);
+    }
+
+    // As above with a given window size, so a test can cross window edges with a small file.
+    static byte[] hashFile(Algorithm algorithm, Path file, long windowSize) throws IOException {
+        MessageDigest digest = digest(algorithm);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += windowSize) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, size - position));
+                digest.update(window);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * The hex digest of the item's UTF-8 bytes: what the old getSHA256Hash helpers returned, for
+     * any algorithm.
+     */
+    public static String hex(Algorithm algorithm, String item) {
+        return toHex(hash(algorithm, item));
+    }
+
+    /**
+     * @return The bytes as lowercase hex, or null for null.
+     */
+    public static String toHex(byte[] data) {
+        if (data == null) return null;
+        byte[] text = new byte[2 * data.length];
+        writeHex(data, 0, data.length, text, 0);
+        return new String(text, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Writes data[offset .. offset + length) as lowercase hex ASCII to out[outOffset ..].
+     */
+    public static void writeHex(byte[] data, int offset, int length, byte[] out, int outOffset) {
+        for (int i = 0; i < length; i++) {
+            int pair = (data[offset + i] & 0xff) << 1;
+            out[outOffset + 2 * i] = HEX_PAIRS[pair];
+            out[outOffset + 2 * i + 1] = HEX_PAIRS[pair + 1];
+        }
+    }
+
+    // The helper every demo used to repeat, kept only so the report can compare against it.
+    private static String legacySha256Hex(String input) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] encodedhash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hexString = new StringBuilder(2 * encodedhash.length);
+        for (byte b : encodedhash) {
+            String hex = Integer.toHexString(0xff & b);
+            if (hex.length() == 1) {
+                hexString.append('0');
+            }
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+
+    private interface Op {
+        void run() throws Exception;
+    }
+
+    // Runs op for about budgetMillis after a short warm-up and returns operations per second.
+    private static double rate(Op op, long budgetMillis) throws Exception {
+        for (long end = System.nanoTime() + budgetMillis * 200_000; System.nanoTime() < end; ) {
+            op.run();
+        }
+        long start = System.nanoTime();
+        long budget = budgetMillis * 1_000_000;
+        long ops = 0;
+        long elapsed;
+        do {
+            op.run();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < budget);
+        return ops * 1e9 / elapsed;
+    }
+
+    private static String row(String label, int size, double opsPerSecond) {
+        return String.format("%-28s %10d %14.0f %10.1f", label, size, opsPerSecond, opsPerSecond * size / (1 << 20));
+    }
+
+    /**
+     * java Hashing [millis per measurement] [--file FILE]
+     * Reports hashes/s and MB/s per algorithm for small and large inputs, and for a file hashed
+     * through mapped windows (a temporary 256 MB file unless one is given).
+     */
+    public static void main(String[] args) throws Exception {
+        long budget = 500;
+        Path file = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--file")) {
+                file = Path.of(args[++i]);
+            } else {
+                budget = Long.parseLong(args[i]);
+            }
+        }
+
+        System.out.println("--- Hashing throughput, one thread, " + budget + " ms per measurement ---");
+        System.out.println(String.format("%-28s %10s %14s %10s", "", "bytes", "hashes/s", "MB/s"));
+
+        // 1. The old helper against the pooled digest and table hex, on a short string.
+        String item = "Transaction 1234: Alice -> Bob";
+        int itemBytes = item.getBytes(StandardCharsets.UTF_8).length;
+        System.out.println(row("getSHA256Hash (old helper)", itemBytes, rate(() -> legacySha256Hex(item), budget)));
+        System.out.println(row("Hashing.hex sha-256", itemBytes, rate(() -> hex(Algorithm.SHA_256, item), budget)));
+
+        // 2. Raw digests of several sizes per algorithm, without allocating.
+        int[] sizes = { 32, 64, 1024, 16 * 1024, 1 << 20 };
+        byte[] out = new byte[HASH_LENGTH];
+        for (Algorithm algorithm : Algorithm.values()) {
+            for (int size : sizes) {
+                byte[] data = new byte[size];
+                Arrays.fill(data, (byte) 'a');
+                System.out.println(row(algorithm.label(), size, rate(() -> hash(algorithm, data, 0, size, out, 0), budget)));
+            }
+        }
+
+        // 3. A large file through memory-mapped windows.
+        boolean temporary = file == null;
+        if (temporary) {
+            file = Files.createTempFile("hashing", ".bin");
+            byte[] block = new byte[1 << 20];
+            Arrays.fill(block, (byte) 'a');
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                for (int i = 0; i < 256; i++) {
+                    channel.write(ByteBuffer.wrap(block));
+                }
+            }
+        }
+        try {
+            long size = Files.size(file);
+            for (Algorithm algorithm : Algorithm.values()) {
+                hashFile(algorithm, file); // warms the page cache
+                long start = System.nanoTime();
+                byte[] digest = hashFile(algorithm, file);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.println(String.format("%-28s %10d %14.2f %10.1f  %s", "file " + algorithm.label(), size,
+                        1 / seconds, size / seconds / (1 << 20), toHex(digest).substring(0, 16) + "..."));
+            }
+        } finally {
+            if (temporary) Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Verifies many Merkle proofs against one root, in parallel and on raw digests.
+ *
+ * Proofs for leaves in the same subtree share their upper path, so once one proof has been
+ * checked all the way to the root, every digest on its path is known to be in the tree. Those
+ * digests go into a bounded cache, together with their level and their index on that level; a
+ * later proof that reaches one of them at the same level and index is accepted there, without
+ * hashing the rest of the way up.
+ *
+ * The verifier is told the tree's leaf count, and every proof must have exactly as many steps as
+ * the tree is high and a leaf index below the leaf count, whether or not it hits the cache. The
+ * index comes from the proof's own leaf index (or left/right positions), so a cache hit means the
+ * item hashes up to the node already proven at that level and position; the remaining siblings
+ * would only repeat the check that proved it.
+ *
+ * The cache is a fixed array of slots picked by digest bits; a new digest simply replaces
+ * whatever was in its slot. That keeps it bounded and lets all threads share it without locks.
+ */
+public class MerkleBatchVerifier {
+
+    private static final int HASH_LENGTH = MerkleEngine.HASH_LENGTH;
+    private static final VarHandle INDEX = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final byte[] root;
+    private final MerkleEngine.Mode mode;
+    private final AtomicReferenceArray<byte[]> proven;
+    private final int cacheMask;
+    private final LongAdder hashes = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final long leafCount;
+    // Steps in every proof for this tree: one per level below the root.
+    private final int height;
+
+    /**
+     * @param root       The root every proof must lead to.
+     * @param mode       How the tree combined its nodes.
+     * @param leafCount  How many leaves the tree has.
+     * @param cacheSlots How many proven digests to remember (rounded up to a power of two).
+     */
+    public MerkleBatchVerifier(byte[] root, MerkleEngine.Mode mode, long leafCount, int cacheSlots) {
+        if (leafCount < 1) {
+            throw new IllegalArgumentException("A tree has at least one leaf, not " + leafCount);
+        }
+        this.root = root.clone();
+        this.mode = mode;
+        this.leafCount = leafCount;
+        this.height = 64 - Long.numberOfLeadingZeros(leafCount - 1);
+        int slots = Integer.highestOneBit(Math.max(2, cacheSlots) - 1) << 1;
+        this.proven = new AtomicReferenceArray<>(slots);
+        this.cacheMask = slots - 1;
+    }
+
+    /**
+     * Verifies every (item, proof) pair, spreading them across the common fork-join pool.
+     * @return One result per pair, in the same order.
+     */
+    public boolean[] verifyAll(List<String> items, List<List<MerkleTree.ProofNode>> proofs) {
+        if (items.size() != proofs.size()) {
+            throw new IllegalArgumentException(items.size() + " items but " + proofs.size() + " proofs");
+        }
+        boolean[] results = new boolean[items.size()];
+        IntStream.range(0, results.length).parallel().forEach(i -> results[i] = verify(items.get(i), proofs.get(i)));
+        return results;
+    }
+
+    /**
+     * Verifies one proof in the MerkleTree.ProofNode format.
+     */
+    public boolean verify(String item, List<MerkleTree.ProofNode> proof) {
+        if (proof == null || proof.size() != height) return false;
+        byte[] siblings = new byte[proof.size() * HASH_LENGTH];
+        long leftMask = 0;
+        for (int level = 0; level < proof.size(); level++) {
+            MerkleTree.ProofNode node = proof.get(level);
+            MerkleEngine.fromHex(node.hash, siblings, level * HASH_LENGTH);
+            if (node.position == MerkleTree.ProofNode.Position.LEFT) {
+                leftMask |= 1L << level;
+            }
+        }
+        return verify(item, siblings, leftMask);
+    }
+
+    /**
+     * Verifies a proof in the FlatMerkleTree.proofDigests format: siblings packed back to back,
+     * with the sibling on level l on the left when bit l of the leaf index is set.
+     */
+    public boolean verify(String item, long leafIndex, byte[] siblings) {
+        if (siblings.length != height * HASH_LENGTH) {
+            return false;
+        }
+        return verify(item, siblings, leafIndex);
+    }
+
+    // Bit l of leafIndex is set when the sibling on level l is on the left, so the path node on
+    // level l has index leafIndex >>> l. The proof has exactly height steps.
+    private boolean verify(String item, byte[] siblings, long leafIndex) {
+        if (leafIndex < 0 || leafIndex >= leafCount) {
+            return false;
+        }
+        MerkleEngine engine = MerkleEngine.forCurrentThread(mode);
+        int steps = siblings.length / HASH_LENGTH;
+        // path[l] is the node on level l; every one of them is cached if the proof succeeds.
+        byte[][] path = new byte[steps + 1][HASH_LENGTH];
+        engine.hashLeaf(item, path[0], 0);
+        hashes.increment();
+
+        for (int level = 0; level < steps; level++) {
+            if (isProven(path[level], level, leafIndex >>> level)) {
+                cacheHits.increment();
+                remember(path, level, leafIndex);
+                return true;
+            }
+            if ((leafIndex & (1L << level)) != 0) {
+                engine.hashPair(siblings, level * HASH_LENGTH, path[level], 0, path[level + 1], 0);
+            } else {
+                engine.hashPair(path[level], 0, siblings, level * HASH_LENGTH, path[level + 1], 0);
+            }
+            hashes.increment();
+        }
+
+        if (!Arrays.equals(path[steps], root)) {
+            return false;
+        }
+        remember(path, steps, leafIndex);
+        return true;
+    }
+
+    // A cache entry is the digest, then one byte holding its level, then its index on that level.
+    private boolean isProven(byte[] digest, int level, long index) {
+        byte[] cached = proven.get(slotFor(digest, level));
+        return cached != null && cached[HASH_LENGTH] == level
+                && (long) INDEX.get(cached, HASH_LENGTH + 1) == index
+                && Arrays.equals(cached, 0, HASH_LENGTH, digest, 0, HASH_LENGTH);
+    }
+
+    // Caches path[0 .. upTo); path[upTo] is the root or already cached.
+    private void remember(byte[][] path, int upTo, long leafIndex) {
+        for (int level = 0; level < upTo; level++) {
+            byte[] entry = Arrays.copyOf(path[level], HASH_LENGTH + 9);
+            entry[HASH_LENGTH] = (byte) level;
+            INDEX.set(entry, HASH_LENGTH + 1, leafIndex >>> level);
+            proven.set(slotFor(path[level], level), entry);
+        }
+    }
+
+    private int slotFor(byte[] digest, int level) {
+        int h = (digest[0] & 0xff) << 24 | (digest[1] & 0xff) << 16 | (digest[2] & 0xff) << 8 | (digest[3] & 0xff);
+        return (h + level) & cacheMask;
+    }
+
+    /**
+     * @return How many hashes this verifier has computed so far.
+     */
+    public long hashCount() {
+        return hashes.sum();
+    }
+
+    /**
+     * @return How many proofs were accepted at a cached digest instead of at the root.
+     */
+    public long cacheHitCount() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Compares one-at-a-time verification with the batch verifier on the same proofs.
+     * java MerkleBatchVerifier [leaves] [proofs]
+     */
+    public static void main(String[] args) {
+        int leaves = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        List<String> transactions = new ArrayList<>();
+        for (int i = 0; i < leaves; i++) {
+            transactions.add("Tx" + i);
+        }
+        FlatMerkleTree tree = FlatMerkleTree.build(transactions, MerkleEngine.Mode.HEX_COMPAT);
+        String merkleRoot = tree.rootHex();
+
+        Random random = new Random(42);
+        List<String> items = new ArrayList<>();
+        List<List<MerkleTree.ProofNode>> proofs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int index = random.nextInt(leaves);
+            items.add(transactions.get(index));
+            proofs.add(tree.proofFor(index));
+        }
+
+        System.out.println("--- Verifying " + count + " proofs against a " + leaves + "-leaf tree ---");
+        long start = System.nanoTime();
+        int valid = 0;
+        for (int i = 0; i < count; i++) {
+            if (MerkleTree.verifyMerkleProof(items.get(i), proofs.get(i), merkleRoot)) valid++;
+        }
+        double oneByOne = (System.nanoTime() - start) / 1e6;
+        System.out.println("One at a time: " + valid + " valid, " + String.format("%.1f", oneByOne) + " ms, "
+                + (long) count * tree.levelCount() + " hashes");
+
+        MerkleBatchVerifier verifier = new MerkleBatchVerifier(tree.root(), MerkleEngine.Mode.HEX_COMPAT, tree.size(), 1 << 16);
+        start = System.nanoTime();
+        boolean[] results = verifier.verifyAll(items, proofs);
+        double batch = (System.nanoTime() - start) / 1e6;
+        valid = 0;
+        for (boolean result : results) {
+            if (result) valid++;
+        }
+        System.out.println("Batch:         " + valid + " valid, " + String.format("%.1f", batch) + " ms, "
+                + verifier.hashCount() + " hashes, " + verifier.cacheHitCount() + " proofs stopped at a cached digest");
+    }
+}
@@ -0,0 +1,174 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Finds the leaves where two Merkle trees differ by walking both from the root down and only
+ * descending into nodes whose digests differ.
+ *
+ * Node i on level l covers the same leaves in both trees (i * 2^l up to (i + 1) * 2^l), whatever
+ * their sizes, so nodes can be compared by position. Equal digests over the same number of real
+ * leaves mean the whole subtree is equal and is skipped. With d differing leaves that touches at
+ * most 2 * d nodes per level: O(d log n) comparisons instead of n.
+ *
+ * The walk goes one level at a time, as a sync between two replicas would: each round one side
+ * sends the digests of the nodes still in question and the other answers which ones differ.
+ * Leaves that only one tree has are reported as differing.
+ */
+public class MerkleDiff {
+
+    private static final int HASH_LENGTH = MerkleEngine.HASH_LENGTH;
+
+    private final int[] leaves;
+    private final long nodesCompared;
+    private final int rounds;
+
+    private MerkleDiff(int[] leaves, long nodesCompared, int rounds) {
+        this.leaves = leaves;
+        this.nodesCompared = nodesCompared;
+        this.rounds = rounds;
+    }
+
+    /**
+     * Compares two trees built with the same mode.
+     */
+    public static MerkleDiff compare(FlatMerkleTree a, FlatMerkleTree b) {
+        if (a.mode() != b.mode()) {
+            throw new IllegalArgumentException("Cannot compare a " + a.mode() + " tree with a " + b.mode() + " tree");
+        }
+        int top = Math.max(a.levelCount(), b.levelCount()) - 1;
+        if (top < 0) {
+            return new MerkleDiff(new int[0], 0, 0);
+        }
+
+        long compared = 0;
+        int rounds = 0;
+        int[] frontier = { 0 };
+        int count = 1;
+        for (int level = top; level >= 0; level--) {
+            int[] next = new int[level == 0 ? count : count * 2];
+            int nextCount = 0;
+            for (int i = 0; i < count; i++) {
+                int index = frontier[i];
+                compared++;
+                if (sameSubtree(a, b, level, index)) continue;
+                if (level == 0) {
+                    next[nextCount++] = index;
+                } else {
+                    // A child that neither tree has is simply past the end of both.
+                    for (int child = 2 * index; child <= 2 * index + 1; child++) {
+                        if (child < levelSize(a, level - 1) || child < levelSize(b, level - 1)) {
+                            next[nextCount++] = child;
+                        }
+                    }
+                }
+            }
+            rounds++;
+            frontier = next;
+            count = nextCount;
+            if (count == 0) break;
+        }
+        return new MerkleDiff(Arrays.copyOf(frontier, count), compared, rounds);
+    }
+
+    // True when both trees have this node, it covers the same number of real leaves in each, and
+    // the digests are equal.
+    private static boolean sameSubtree(FlatMerkleTree a, FlatMerkleTree b, int level, int index) {
+        if (index >= levelSize(a, level) || index >= levelSize(b, level)) return false;
+        long end = (long) (index + 1) << level;
+        if (Math.min(end, a.size()) != Math.min(end, b.size())) return false;
+        int from = index * HASH_LENGTH;
+        return Arrays.equals(a.level(level), from, from + HASH_LENGTH, b.level(level), from, from + HASH_LENGTH);
+    }
+
+    private static int levelSize(FlatMerkleTree tree, int level) {
+        return level < tree.levelCount() ? tree.levelSize(level) : 0;
+    }
+
+    // Hashes needed to build a tree of this many leaves from scratch: one per leaf, plus one per
+    // node on every level above, where level l has ceil(leaves / 2^l) nodes.
+    static long hashesToBuild(long leaves) {
+        long hashes = leaves;
+        for (long size = leaves; size > 1; ) {
+            size = (size + 1) / 2;
+            hashes += size;
+        }
+        return hashes;
+    }
+
+    /**
+     * @return The indexes of the differing leaves, in ascending order.
+     */
+    public int[] leaves() {
+        return leaves.clone();
+    }
+
+    /**
+     * @return How many node digests were compared.
+     */
+    public long nodesCompared() {
+        return nodesCompared;
+    }
+
+    /**
+     * @return The digest bytes one replica sends the other to run this diff.
+     */
+    public long bytesExchanged() {
+        return nodesCompared * HASH_LENGTH;
+    }
+
+    /**
+     * @return How many request/response rounds the diff takes between two replicas.
+     */
+    public int rounds() {
+        return rounds;
+    }
+
+    /**
+     * Two replicas of the same transaction log, one with a few changed and appended entries.
+     * java MerkleDiff [leaves] [changes]
+     */
+    public static void main(String[] args) {
+        int leaves = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        int changes = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        List<String> transactions = new ArrayList<>();
+        for (int i = 0; i < leaves; i++) {
+            transactions.add("Tx" + i);
+        }
+        FlatMerkleTree replicaA = FlatMerkleTree.build(transactions, MerkleEngine.Mode.HEX_COMPAT);
+        FlatMerkleTree replicaB = FlatMerkleTree.build(transactions, MerkleEngine.Mode.HEX_COMPAT);
+
+        // Replica B has a few edited transactions and two it received that A has not.
+        Random random = new Random(7);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < changes; i++) {
+            int index = random.nextInt(leaves);
+            replicaB.update(index, "Tx" + index + "-edited");
+            expected.add(index);
+        }
+        expected.add(replicaB.append("Tx" + leaves));
+        expected.add(replicaB.append("Tx" + (leaves + 1)));
+
+        long start = System.nanoTime();
+        MerkleDiff diff = compare(replicaA, replicaB);
+        double millis = (System.nanoTime() - start) / 1e6;
+        boolean correct = Arrays.equals(diff.leaves(), expected.stream().mapToInt(Integer::intValue).toArray());
+
+        // Without the trees, each side hashes all of its transactions again (leaves and inner
+        // nodes) and sends every leaf digest. The diff reads digests both trees already hold.
+        long fullCompared = Math.max(replicaA.size(), replicaB.size());
+        long fullHashes = hashesToBuild(replicaA.size()) + hashesToBuild(replicaB.size());
+        System.out.println("--- Diffing two replicas of " + leaves + " transactions ---");
+        System.out.println("Differing leaves: " + Arrays.toString(diff.leaves()) + (correct ? " (correct)" : " (WRONG)"));
+        System.out.println("Tree diff:       " + diff.nodesCompared() + " digests compared, " + diff.bytesExchanged()
+                + " bytes, 0 hashes, " + diff.rounds() + " rounds, " + String.format("%.2f", millis) + " ms");
+        System.out.println("Full comparison: " + fullCompared + " digests compared, " + fullCompared * HASH_LENGTH
+                + " bytes, " + fullHashes + " hashes (" + (replicaA.size() + replicaB.size()) + " leaves and "
+                + (fullHashes - replicaA.size() - replicaB.size()) + " inner nodes over both sides)");
+        System.out.println("Saved:           " + (fullCompared * HASH_LENGTH - diff.bytesExchanged()) + " bytes and "
+                + fullHashes + " hashes");
+    }
+}
@@ -0,0 +1,336 @@
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The Merkle tree hashing shared by MerkleTree and MerkleTreeConstructor, working on raw
+ * 32-byte digests instead of 64-character hex Strings.
+ *
+ * A tree level is one flat byte[] holding its digests back to back (node i at offset i * 32),
+ * and every hash goes through the same MessageDigest, so building a level allocates one array
+ * and nothing per node. An odd node at the end of a level is paired with itself, as before.
+ *
+ * An engine is not thread-safe; give each thread its own. The parallel builders below keep
+ * one engine per pool thread for that.
+ *
+ * Hashing is SHA-256 unless an engine is given another Hashing.Algorithm; the roots then differ,
+ * but the tree shape and the 32-byte nodes stay the same.
+ */
+public class MerkleEngine {
+
+    public static final int HASH_LENGTH = Hashing.HASH_LENGTH;
+
+    /**
+     * How two child digests are combined into their parent. Leaves are the digest of the item's
+     * UTF-8 bytes in both modes, with the engine's algorithm (SHA-256 unless given another).
+     */
+    public enum Mode {
+        /**
+         * parent = digest of the two children's lowercase hex strings, concatenated. With SHA-256
+         * this gives exactly the roots MerkleTree and MerkleTreeConstructor have always produced.
+         */
+        HEX_COMPAT,
+        /**
+         * parent = digest of the two 32-byte children, concatenated. Hashes 64 bytes per
+         * parent instead of 128, but the roots differ from the hex-string ones.
+         */
+        RAW
+    }
+
+    // Nodes hashed by one fork-join task. Levels with fewer nodes than this are built sequentially.
+    private static final int PARALLEL_CHUNK = 4096;
+
+    // One engine per (mode, algorithm) per thread, created on first use.
+    private static final ThreadLocal<MerkleEngine[]> ENGINES =
+            ThreadLocal.withInitial(() -> new MerkleEngine[Mode.values().length * Hashing.Algorithm.values().length]);
+
+    private final Mode mode;
+    private final Hashing.Algorithm algorithm;
+    private final MessageDigest digest;
+    private final byte[] hexPair = new byte[4 * HASH_LENGTH]; // scratch space for HEX_COMPAT parents
+
+    public MerkleEngine(Mode mode) {
+        this(mode, Hashing.Algorithm.SHA_256);
+    }
+
+    public MerkleEngine(Mode mode, Hashing.Algorithm algorithm) {
+        this.mode = mode;
+        this.algorithm = algorithm;
+        this.digest = algorithm.newDigest();
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    public Hashing.Algorithm algorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Computes the Merkle root of the items.
+     * @return The 32-byte root, or null for an empty or null list.
+     */
+    public byte[] root(List<String> dataItems) {
+        if (dataItems == null || dataItems.isEmpty()) return null;
+        byte[] level = hashLeaves(dataItems);
+        while (level.length > HASH_LENGTH) {
+            level = nextLevel(level);
+        }
+        return level;
+    }
+
+    /**
+     * Hashes every item into one flat leaf level.
+     */
+    public byte[] hashLeaves(List<String> dataItems) {
+        byte[] leaves = new byte[dataItems.size() * HASH_LENGTH];
+        int offset = 0;
+        for (String item : dataItems) {
+            hashLeaf(item, leaves, offset);
+            offset += HASH_LENGTH;
+        }
+        return leaves;
+    }
+
+    /**
+     * Writes the digest of item's UTF-8 bytes, with this engine's algorithm, to out[outOffset ..].
+     */
+    public void hashLeaf(String item, byte[] out, int outOffset) {
+        byte[] data = item.getBytes(StandardCharsets.UTF_8);
+        hashLeaf(data, 0, data.length, out, outOffset);
+    }
+
+    /**
+     * Writes the digest of data[offset .. offset + length), with this engine's algorithm, to
+     * out[outOffset ..].
+     */
+    public void hashLeaf(byte[] data, int offset, int length, byte[] out, int outOffset) {
+        digest.update(data, offset, length);
+        finish(out, outOffset);
+    }
+
+    /**
+     * Builds the parent level of a flat level, duplicating the last node when the count is odd.
+     */
+    public byte[] nextLevel(byte[] level) {
+        int count = level.length / HASH_LENGTH;
+        int parents = (count + 1) / 2;
+        byte[] next = new byte[parents * HASH_LENGTH];
+        hashParents(level, count, 0, parents, next);
+        return next;
+    }
+
+    /**
+     * Hashes the parents [fromParent, toParent) of a level holding count nodes into next.
+     */
+    public void hashParents(byte[] level, int count, int fromParent, int toParent, byte[] next) {
+        for (int p = fromParent; p < toParent; p++) {
+            int left = 2 * p;
+            int right = left + 1 < count ? left + 1 : left;
+            hashPair(level, left * HASH_LENGTH, level, right * HASH_LENGTH, next, p * HASH_LENGTH);
+        }
+    }
+
+    /**
+     * Writes the parent of left[leftOffset ..] and right[rightOffset ..] to out[outOffset ..].
+     * out may be the same array as either child.
+     */
+    public void hashPair(byte[] left, int leftOffset, byte[] right, int rightOffset, byte[] out, int outOffset) {
+        if (mode == Mode.HEX_COMPAT) {
+            Hashing.writeHex(left, leftOffset, HASH_LENGTH, hexPair, 0);
+            Hashing.writeHex(right, rightOffset, HASH_LENGTH, hexPair, 2 * HASH_LENGTH);
+            digest.update(hexPair, 0, hexPair.length);
+        } else {
+            digest.update(left, leftOffset, HASH_LENGTH);
+            digest.update(right, rightOffset, HASH_LENGTH);
+        }
+        finish(out, outOffset);
+    }
+
+    /**
+     * @return This thread's SHA-256 engine for the given mode.
+     */
+    public static MerkleEngine forCurrentThread(Mode mode) {
+        return forCurrentThread(mode, Hashing.Algorithm.SHA_256);
+    }
+
+    /**
+     * @return This thread's engine for the given mode and algorithm.
+     */
+    public static MerkleEngine forCurrentThread(Mode mode, Hashing.Algorithm algorithm) {
+        MerkleEngine[] engines = ENGINES.get();
+        int slot = mode.ordinal() * Hashing.Algorithm.values().length + algorithm.ordinal();
+        if (engines[slot] == null) {
+            engines[slot] = new MerkleEngine(mode, algorithm);
+        }
+        return engines[slot];
+    }
+
+    /**
+     * Computes the same root as root(dataItems) on the common fork-join pool.
+     */
+    public static byte[] parallelRoot(List<String> dataItems, Mode mode) {
+        return parallelRoot(dataItems, mode, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the same root as new MerkleEngine(mode, algorithm).root(dataItems) on the common
+     * fork-join pool.
+     */
+    public static byte[] parallelRoot(List<String> dataItems, Mode mode, Hashing.Algorithm algorithm) {
+        return parallelRoot(dataItems, mode, algorithm, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the same root as root(dataItems), hashing the leaves and every wide level in
+     * chunks across the pool. Each parent depends only on its own two children, so the chunks
+     * are independent and the result is bit-for-bit the sequential one.
+     */
+    public static byte[] parallelRoot(List<String> dataItems, Mode mode, ForkJoinPool pool) {
+        return parallelRoot(dataItems, mode, Hashing.Algorithm.SHA_256, pool);
+    }
+
+    public static byte[] parallelRoot(List<String> dataItems, Mode mode, Hashing.Algorithm algorithm, ForkJoinPool pool) {
+        if (dataItems == null || dataItems.isEmpty()) return null;
+        byte[] level = parallelHashLeaves(dataItems, mode, algorithm, pool);
+        while (level.length > HASH_LENGTH) {
+            level = parallelNextLevel(level, mode, algorithm, pool);
+        }
+        return level;
+    }
+
+    /**
+     * Parallel version of hashLeaves.
+     */
+    public static byte[] parallelHashLeaves(List<String> dataItems, Mode mode, ForkJoinPool pool) {
+        return parallelHashLeaves(dataItems, mode, Hashing.Algorithm.SHA_256, pool);
+    }
+
+    public static byte[] parallelHashLeaves(List<String> dataItems, Mode mode, Hashing.Algorithm algorithm, ForkJoinPool pool) {
+        // The tasks index into the list, so make sure get(i) is cheap.
+        List<String> items = dataItems instanceof RandomAccess ? dataItems : new ArrayList<>(dataItems);
+        byte[] leaves = new byte[items.size() * HASH_LENGTH];
+        if (items.size() < PARALLEL_CHUNK) {
+            LevelTask.hashRange(items, null, 0, leaves, forCurrentThread(mode, algorithm), 0, items.size());
+        } else {
+            pool.invoke(new LevelTask(items, null, 0, leaves, mode, algorithm, 0, items.size()));
+        }
+        return leaves;
+    }
+
+    /**
+     * Parallel version of nextLevel; falls back to the sequential loop once the level is narrow.
+     */
+    public static byte[] parallelNextLevel(byte[] level, Mode mode, ForkJoinPool pool) {
+        return parallelNextLevel(level, mode, Hashing.Algorithm.SHA_256, pool);
+    }
+
+    public static byte[] parallelNextLevel(byte[] level, Mode mode, Hashing.Algorithm algorithm, ForkJoinPool pool) {
+        int count = level.length / HASH_LENGTH;
+        int parents = (count + 1) / 2;
+        byte[] next = new byte[parents * HASH_LENGTH];
+        if (parents < PARALLEL_CHUNK) {
+            forCurrentThread(mode, algorithm).hashParents(level, count, 0, parents, next);
+        } else {
+            pool.invoke(new LevelTask(null, level, count, next, mode, algorithm, 0, parents));
+        }
+        return next;
+    }
+
+    /**
+     * Hashes the output nodes [from, to) of one level, splitting in half until a range is
+     * PARALLEL_CHUNK nodes or fewer. Leaf levels read items, interior levels read the level below.
+     */
+    private static class LevelTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> items;
+        private final byte[] level;
+        private final int count;
+        private final byte[] out;
+        private final Mode mode;
+        private final Hashing.Algorithm algorithm;
+        private final int from;
+        private final int to;
+
+        LevelTask(List<String> items, byte[] level, int count, byte[] out, Mode mode, Hashing.Algorithm algorithm,
+                  int from, int to) {
+            this.items = items;
+            this.level = level;
+            this.count = count;
+            this.out = out;
+            this.mode = mode;
+            this.algorithm = algorithm;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_CHUNK) {
+                hashRange(items, level, count, out, forCurrentThread(mode, algorithm), from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new LevelTask(items, level, count, out, mode, algorithm, from, middle),
+                      new LevelTask(items, level, count, out, mode, algorithm, middle, to));
+        }
+
+        static void hashRange(List<String> items, byte[] level, int count, byte[] out, MerkleEngine engine, int from, int to) {
+            if (items != null) {
+                for (int i = from; i < to; i++) {
+                    engine.hashLeaf(items.get(i), out, i * HASH_LENGTH);
+                }
+            } else {
+                engine.hashParents(level, count, from, to, out);
+            }
+        }
+    }
+
+    private void finish(byte[] out, int outOffset) {
+        try {
+            digest.digest(out, outOffset, HASH_LENGTH);
+        } catch (DigestException e) {
+            throw new IllegalArgumentException("No room for a digest at offset " + outOffset, e);
+        }
+    }
+
+    /**
+     * @return The digest as a lowercase hex string, or null for a null digest.
+     */
+    public static String toHex(byte[] digest) {
+        return Hashing.toHex(digest);
+    }
+
+    /**
+     * Decodes a 64-character hex digest into out[outOffset ..] without allocating.
+     */
+    public static void fromHex(CharSequence hex, byte[] out, int outOffset) {
+        if (hex.length() != 2 * HASH_LENGTH) {
+            throw new IllegalArgumentException("Expected " + 2 * HASH_LENGTH + " hex characters but got " + hex.length());
+        }
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Not a hex digest: " + hex);
+            }
+            out[outOffset + i] = (byte) (high << 4 | low);
+        }
+    }
+
+    /**
+     * Copies node index out of a flat level.
+     */
+    public static byte[] node(byte[] level, int index) {
+        byte[] node = new byte[HASH_LENGTH];
+        System.arraycopy(level, index * HASH_LENGTH, node, 0, HASH_LENGTH);
+        return node;
+    }
+}
@@ -0,0 +1,283 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One proof for several leaves of the same tree.
+ *
+ * Separate proofs repeat every sibling the leaves have in common, and send siblings that are
+ * themselves on another proven path. A multiproof walks the tree level by level with the set of
+ * nodes it can already compute, and only includes a sibling when it cannot be computed from the
+ * leaves being proven. For k leaves that sit close together that is about k + log n digests
+ * instead of k * log n, and the verifier hashes each shared node once.
+ *
+ * The siblings are stored in the order they are needed: level by level from the leaves up, and
+ * left to right within a level. The wire format (encode/decode) is:
+ * magic "MP", version, mode, then varints for the leaf count, the number of proven leaves, the
+ * leaf indexes (each as the gap from the previous one) and the number of siblings, followed by
+ * the raw 32-byte siblings.
+ */
+public class MerkleMultiproof {
+
+    private static final int HASH_LENGTH = MerkleEngine.HASH_LENGTH;
+    private static final byte VERSION = 1;
+
+    private final MerkleEngine.Mode mode;
+    private final int leafCount;
+    private final int[] indices;     // sorted, no duplicates
+    private final byte[] siblings;   // packed 32-byte digests
+
+    private MerkleMultiproof(MerkleEngine.Mode mode, int leafCount, int[] indices, byte[] siblings) {
+        this.mode = mode;
+        this.leafCount = leafCount;
+        this.indices = indices;
+        this.siblings = siblings;
+    }
+
+    /**
+     * Collects the siblings needed to prove the given leaves of the tree together.
+     */
+    public static MerkleMultiproof create(FlatMerkleTree tree, int... leafIndices) {
+        int[] known = Arrays.stream(leafIndices).sorted().distinct().toArray();
+        if (known.length == 0) {
+            throw new IllegalArgumentException("No leaves to prove");
+        }
+        if (known[0] < 0 || known[known.length - 1] >= tree.size()) {
+            throw new IndexOutOfBoundsException("Leaf indexes must be within 0.." + (tree.size() - 1));
+        }
+
+        ByteArrayOutputStream siblings = new ByteArrayOutputStream();
+        int[] level = known;
+        for (int depth = 0; depth < tree.levelCount() - 1; depth++) {
+            int size = tree.levelSize(depth);
+            int[] parents = new int[level.length];
+            int parentCount = 0;
+            for (int i = 0; i < level.length; i++) {
+                int index = level[i];
+                int sibling = index ^ 1;
+                if (i + 1 < level.length && level[i + 1] == sibling) {
+                    i++; // both children are known
+                } else if (sibling < size) {
+                    siblings.writeBytes(tree.node(depth, sibling));
+                }
+                // otherwise it is the last node of an odd level and is its own sibling
+                parents[parentCount++] = index / 2;
+            }
+            level = Arrays.copyOf(parents, parentCount);
+        }
+        return new MerkleMultiproof(tree.mode(), tree.size(), known, siblings.toByteArray());
+    }
+
+    /**
+     * @return The proven leaf indexes in ascending order; verify expects its items in this order.
+     */
+    public int[] indices() {
+        return indices.clone();
+    }
+
+    public int leafCount() {
+        return leafCount;
+    }
+
+    public int siblingCount() {
+        return siblings.length / HASH_LENGTH;
+    }
+
+    /**
+     * Rebuilds the root from the items and the siblings, hashing every shared node once.
+     * @param items The items at indices(), in the same order.
+     */
+    public boolean verify(List<String> items, byte[] root) {
+        if (items.size() != indices.length) return false;
+        MerkleEngine engine = MerkleEngine.forCurrentThread(mode);
+
+        int[] level = indices.clone();
+        byte[] nodes = new byte[level.length * HASH_LENGTH];
+        for (int i = 0; i < items.size(); i++) {
+            engine.hashLeaf(items.get(i), nodes, i * HASH_LENGTH);
+        }
+
+        int used = 0;
+        int size = leafCount;
+        while (size > 1) {
+            int parentCount = 0;
+            for (int i = 0; i < level.length; i++) {
+                int index = level[i];
+                int sibling = index ^ 1;
+                int self = i * HASH_LENGTH;
+                int out = parentCount * HASH_LENGTH;
+                if (i + 1 < level.length && level[i + 1] == sibling) {
+                    engine.hashPair(nodes, self, nodes, self + HASH_LENGTH, nodes, out);
+                    i++;
+                } else if (sibling < size) {
+                    if (used + HASH_LENGTH > siblings.length) return false;
+                    if (index % 2 == 0) {
+                        engine.hashPair(nodes, self, siblings, used, nodes, out);
+                    } else {
+                        engine.hashPair(siblings, used, nodes, self, nodes, out);
+                    }
+                    used += HASH_LENGTH;
+                } else {
+                    engine.hashPair(nodes, self, nodes, self, nodes, out);
+                }
+                // Parents are written at or before the children just read, so one array is enough.
+                level[parentCount++] = index / 2;
+            }
+            level = Arrays.copyOf(level, parentCount);
+            size = (size + 1) >>> 1;
+        }
+        return used == siblings.length && Arrays.equals(nodes, 0, HASH_LENGTH, root, 0, HASH_LENGTH);
+    }
+
+    /**
+     * @return The compact binary form described in the class comment.
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + 2 * indices.length + siblings.length);
+        out.write('M');
+        out.write('P');
+        out.write(VERSION);
+        out.write(mode.ordinal());
+        writeVarint(out, leafCount);
+        writeVarint(out, indices.length);
+        int previous = 0;
+        for (int index : indices) {
+            writeVarint(out, index - previous);
+            previous = index;
+        }
+        writeVarint(out, siblingCount());
+        out.writeBytes(siblings);
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads a multiproof written by encode.
+     * @throws IllegalArgumentException If the bytes are not a valid multiproof.
+     */
+    public static MerkleMultiproof decode(byte[] encoded) {
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        try {
+            if (in.get() != 'M' || in.get() != 'P' || in.get() != VERSION) {
+                throw new IllegalArgumentException("Not a version " + VERSION + " multiproof");
+            }
+            int modeOrdinal = in.get();
+            if (modeOrdinal < 0 || modeOrdinal >= MerkleEngine.Mode.values().length) {
+                throw new IllegalArgumentException("Unknown tree mode " + modeOrdinal);
+            }
+            MerkleEngine.Mode mode = MerkleEngine.Mode.values()[modeOrdinal];
+            int leafCount = readVarint(in);
+            int indexCount = readVarint(in);
+            if (indexCount == 0 || indexCount > in.remaining() || indexCount > leafCount) {
+                throw new IllegalArgumentException("Truncated or corrupt multiproof");
+            }
+            int[] indices = new int[indexCount];
+            int previous = 0;
+            for (int i = 0; i < indices.length; i++) {
+                int gap = readVarint(in);
+                if (i > 0 && gap == 0) {
+                    throw new IllegalArgumentException("Leaf indexes must be strictly increasing");
+                }
+                // previous < leafCount here, so neither side can overflow.
+                if (gap >= leafCount - previous) {
+                    throw new IllegalArgumentException("Leaf index out of range for " + leafCount + " leaves");
+                }
+                previous += gap;
+                indices[i] = previous;
+            }
+            int siblingCount = readVarint(in);
+            long needed = siblingsNeeded(leafCount, indices);
+            if (siblingCount != needed) {
+                throw new IllegalArgumentException("Expected " + needed + " siblings for these leaves but the proof has " + siblingCount);
+            }
+            if ((long) siblingCount * HASH_LENGTH != in.remaining()) {
+                throw new IllegalArgumentException("Expected " + siblingCount + " siblings but " + in.remaining() + " bytes remain");
+            }
+            byte[] siblings = new byte[siblingCount * HASH_LENGTH];
+            in.get(siblings);
+            return new MerkleMultiproof(mode, leafCount, indices, siblings);
+        } catch (RuntimeException e) {
+            if (e instanceof IllegalArgumentException) throw e;
+            throw new IllegalArgumentException("Truncated or corrupt multiproof", e);
+        }
+    }
+
+    // How many siblings create includes for these leaves: the same walk, counting instead of copying.
+    private static long siblingsNeeded(int leafCount, int[] indices) {
+        long needed = 0;
+        int[] level = indices.clone();
+        for (int size = leafCount; size > 1; size = (size + 1) >>> 1) {
+            int parentCount = 0;
+            for (int i = 0; i < level.length; i++) {
+                int index = level[i];
+                int sibling = index ^ 1;
+                if (i + 1 < level.length && level[i + 1] == sibling) {
+                    i++;
+                } else if (sibling < size) {
+                    needed++;
+                }
+                level[parentCount++] = index / 2;
+            }
+            level = Arrays.copyOf(level, parentCount);
+        }
+        return needed;
+    }
+
+    // Unsigned LEB128: 7 bits per byte, high bit set on every byte but the last.
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                if (value < 0) throw new IllegalArgumentException("Varint out of range");
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    /**
+     * Compares k separate proofs with one multiproof for a run of neighbouring transactions.
+     * java MerkleMultiproof [leaves] [k]
+     */
+    public static void main(String[] args) {
+        int leaves = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int k = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+        List<String> transactions = new ArrayList<>();
+        for (int i = 0; i < leaves; i++) {
+            transactions.add("Tx" + i);
+        }
+        FlatMerkleTree tree = FlatMerkleTree.build(transactions, MerkleEngine.Mode.HEX_COMPAT);
+
+        int first = leaves / 3;
+        int[] wanted = new int[k];
+        List<String> items = new ArrayList<>();
+        long separateBytes = 0;
+        for (int i = 0; i < k; i++) {
+            wanted[i] = first + i;
+            items.add(transactions.get(first + i));
+            // A ProofNode is sent as its 64-character hex hash plus a position.
+            separateBytes += (long) tree.proofFor(first + i).size() * (64 + 1);
+        }
+
+        MerkleMultiproof multiproof = create(tree, wanted);
+        byte[] wire = multiproof.encode();
+        boolean valid = decode(wire).verify(items, tree.root());
+
+        System.out.println("--- Proving " + k + " neighbouring transactions in a " + leaves + "-leaf tree ---");
+        System.out.println("Separate proofs: " + k * (tree.levelCount() - 1) + " sibling hashes, about " + separateBytes + " bytes");
+        System.out.println("Multiproof:      " + multiproof.siblingCount() + " sibling hashes, " + wire.length + " bytes");
+        System.out.println("Verification Result: " + (valid ? "SUCCESS" : "FAILURE"));
+    }
+}
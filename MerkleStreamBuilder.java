@@ -0,0 +1,251 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Computes a Merkle root over a stream of items without holding the items or the leaf level
+ * in memory.
+ *
+ * Only the frontier is kept: at most one finished node per level that is still waiting for its
+ * right-hand sibling. Adding a leaf works like incrementing a binary counter, pairing upwards
+ * while a waiting node is there. Memory is O(log n) digests however long the input is, and root()
+ * applies the odd-node duplication rule on the way up, so the root matches MerkleEngine.root on
+ * the same items.
+ *
+ * For files, each line is one item (line endings are not part of the item, as with
+ * BufferedReader.readLine). rootOfFile reads the file through memory-mapped windows and hashes
+ * each line straight from the mapping.
+ */
+public class MerkleStreamBuilder {
+
+    private static final int HASH_LENGTH = MerkleEngine.HASH_LENGTH;
+    // 64 levels cover any long leaf count.
+    private static final int MAX_LEVELS = 64;
+    // Size of each mapped window of a file.
+    private static final long WINDOW = 64L << 20;
+
+    private final MerkleEngine engine;
+    private final byte[][] pending = new byte[MAX_LEVELS][HASH_LENGTH];
+    private final boolean[] hasPending = new boolean[MAX_LEVELS];
+    private final byte[] carry = new byte[HASH_LENGTH];
+    private byte[] lineBuffer = new byte[256];
+    private long leafCount;
+
+    public MerkleStreamBuilder(MerkleEngine.Mode mode) {
+        this(mode, Hashing.Algorithm.SHA_256);
+    }
+
+    public MerkleStreamBuilder(MerkleEngine.Mode mode, Hashing.Algorithm algorithm) {
+        this.engine = new MerkleEngine(mode, algorithm);
+    }
+
+    public long leafCount() {
+        return leafCount;
+    }
+
+    public void add(String item) {
+        engine.hashLeaf(item, carry, 0);
+        push();
+    }
+
+    /**
+     * Adds an item given as its UTF-8 bytes.
+     */
+    public void add(byte[] data, int offset, int length) {
+        engine.hashLeaf(data, offset, length, carry, 0);
+        push();
+    }
+
+    // Pushes the leaf in carry onto the frontier, pairing with waiting nodes like a binary carry.
+    private void push() {
+        int level = 0;
+        while (hasPending[level]) {
+            engine.hashPair(pending[level], 0, carry, 0, carry, 0);
+            hasPending[level] = false;
+            level++;
+        }
+        System.arraycopy(carry, 0, pending[level], 0, HASH_LENGTH);
+        hasPending[level] = true;
+        leafCount++;
+    }
+
+    /**
+     * Finishes the tree from the frontier without changing it, so more items can still be added.
+     * A node left waiting on a level is the last node of an odd-sized level and is paired with
+     * itself; the node carried up from below is always the right-hand (or only) last node.
+     * @return The root, or null if nothing was added.
+     */
+    public byte[] root() {
+        if (leafCount == 0) return null;
+        int top = MAX_LEVELS - 1;
+        while (!hasPending[top]) top--;
+
+        byte[] node = new byte[HASH_LENGTH];
+        boolean carrying = false;
+        for (int level = 0; level < top; level++) {
+            if (hasPending[level]) {
+                if (carrying) {
+                    engine.hashPair(pending[level], 0, node, 0, node, 0);
+                } else {
+                    engine.hashPair(pending[level], 0, pending[level], 0, node, 0);
+                }
+                carrying = true;
+            } else if (carrying) {
+                engine.hashPair(node, 0, node, 0, node, 0);
+            }
+        }
+        // Nothing is waiting above the top level, so it holds one node, or two with the carry.
+        if (carrying) {
+            engine.hashPair(pending[top], 0, node, 0, node, 0);
+            return node;
+        }
+        return pending[top].clone();
+    }
+
+    /**
+     * @return The root of the items, or null if there are none.
+     */
+    public static byte[] root(Iterator<String> items, MerkleEngine.Mode mode) {
+        return root(items, mode, Hashing.Algorithm.SHA_256);
+    }
+
+    /**
+     * Same as root(items, mode), hashing with the given algorithm instead of SHA-256.
+     */
+    public static byte[] root(Iterator<String> items, MerkleEngine.Mode mode, Hashing.Algorithm algorithm) {
+        MerkleStreamBuilder builder = new MerkleStreamBuilder(mode, algorithm);
+        while (items.hasNext()) {
+            builder.add(items.next());
+        }
+        return builder.root();
+    }
+
+    /**
+     * Treats every line of the stream as one UTF-8 item.
+     * @return The root of the lines, or null if the stream is empty.
+     */
+    public static byte[] rootOfLines(InputStream in, MerkleEngine.Mode mode) throws IOException {
+        return rootOfLines(in, mode, Hashing.Algorithm.SHA_256);
+    }
+
+    /**
+     * Same as rootOfLines(in, mode), hashing with the given algorithm instead of SHA-256.
+     */
+    public static byte[] rootOfLines(InputStream in, MerkleEngine.Mode mode, Hashing.Algorithm algorithm) throws IOException {
+        MerkleStreamBuilder builder = new MerkleStreamBuilder(mode, algorithm);
+        byte[] buffer = new byte[1 << 16];
+        int lineLength = 0;
+        boolean open = false; // whether a line has started and not yet been added
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == '\n') {
+                    builder.addLine(builder.lineBuffer, lineLength);
+                    lineLength = 0;
+                    open = false;
+                } else {
+                    if (lineLength == builder.lineBuffer.length) {
+                        builder.lineBuffer = Arrays.copyOf(builder.lineBuffer, lineLength * 2);
+                    }
+                    builder.lineBuffer[lineLength++] = buffer[i];
+                    open = true;
+                }
+            }
+        }
+        if (open) {
+            builder.addLine(builder.lineBuffer, lineLength);
+        }
+        return builder.root();
+    }
+
+    /**
+     * Treats every line of the file as one UTF-8 item, reading it through memory-mapped windows.
+     * @return The root of the lines, or null if the file is empty.
+     */
+    public static byte[] rootOfFile(Path file, MerkleEngine.Mode mode) throws IOException {
+        return rootOfFile(file, mode, Hashing.Algorithm.SHA_256);
+    }
+
+    /**
+     * Same as rootOfFile(file, mode), hashing with the given algorithm instead of SHA-256.
+     */
+    public static byte[] rootOfFile(Path file, MerkleEngine.Mode mode, Hashing.Algorithm algorithm) throws IOException {
+        MerkleStreamBuilder builder = new MerkleStreamBuilder(mode, algorithm);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                int length = (int) Math.min(WINDOW, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == size;
+
+                int lineStart = 0;
+                for (int i = 0; i < length; i++) {
+                    if (window.get(i) == '\n') {
+                        builder.addLine(window, lineStart, i);
+                        lineStart = i + 1;
+                    }
+                }
+                if (last) {
+                    if (lineStart < length) {
+                        builder.addLine(window, lineStart, length);
+                    }
+                    position = size;
+                } else if (lineStart == 0) {
+                    throw new IOException("Line at byte " + position + " is longer than " + WINDOW + " bytes");
+                } else {
+                    // Map the next window from the start of the unfinished line.
+                    position += lineStart;
+                }
+            }
+        }
+        return builder.root();
+    }
+
+    // Copies one line out of the mapping into the reusable line buffer and adds it.
+    private void addLine(MappedByteBuffer window, int from, int to) {
+        int length = to - from;
+        if (length > lineBuffer.length) {
+            lineBuffer = new byte[Math.max(length, lineBuffer.length * 2)];
+        }
+        window.get(from, lineBuffer, 0, length);
+        addLine(lineBuffer, length);
+    }
+
+    // Drops a trailing '\r' so Windows line endings give the same items as readLine.
+    private void addLine(byte[] line, int length) {
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        add(line, 0, length);
+    }
+
+    /**
+     * Prints the root of a file with one item per line: java MerkleStreamBuilder FILE [raw] [ALGORITHM]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: java MerkleStreamBuilder FILE [raw] [sha-256|sha-512/256|sha3-256]");
+            return;
+        }
+        MerkleEngine.Mode mode = MerkleEngine.Mode.HEX_COMPAT;
+        Hashing.Algorithm algorithm = Hashing.Algorithm.SHA_256;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("raw")) {
+                mode = MerkleEngine.Mode.RAW;
+            } else {
+                algorithm = Hashing.Algorithm.fromLabel(args[i]);
+            }
+        }
+        long start = System.nanoTime();
+        byte[] root = rootOfFile(Path.of(args[0]), mode, algorithm);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Merkle Root (" + mode + ", " + algorithm.jcaName() + "): " + MerkleEngine.toHex(root));
+        System.out.println("Time taken: " + millis + " milliseconds");
+    }
+}
@@ -1,7 +1,3 @@
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -62,60 +58,27 @@ public class MerkleTree {
      * The proof is the list of sibling hashes needed to reconstruct the root.
      */
     public static List<ProofNode> generateMerkleProof(List<String> dataItems, String itemToProve) {
-        List<ProofNode> proof = new ArrayList<>();
-        String itemHash = getSHA256Hash(itemToProve);
-
-        // We need all levels of the tree to find the siblings.
-        List<List<String>> allLevels = new ArrayList<>();
-        List<String> currentLevel = new ArrayList<>();
-        for (String item : dataItems) {
-            currentLevel.add(getSHA256Hash(item));
-        }
-        allLevels.add(currentLevel);
-
-        while (currentLevel.size() > 1) {
-            currentLevel = buildNextLevel(currentLevel);
-            allLevels.add(currentLevel);
-        }
+        // This builds the whole tree for one proof. To serve many proofs, build a FlatMerkleTree
+        // once and call proofFor on it instead.
+        FlatMerkleTree tree = FlatMerkleTree.build(dataItems, MerkleEngine.Mode.HEX_COMPAT);
+        return tree == null ? null : tree.proofFor(itemToProve);
+    }
 
-        // Find the index of our item's hash in the leaf level.
-        int itemIndex = -1;
-        for(int i=0; i < allLevels.get(0).size(); i++) {
-            if(allLevels.get(0).get(i).equals(itemHash)){
-                itemIndex = i;
-                break;
-            }
-        }
-        if(itemIndex == -1) return null; // Item not in the list
-
-        // Iterate up the tree from the leaf level to collect proof nodes.
-        for (int level = 0; level < allLevels.size() - 1; level++) {
-            List<String> currentLevelNodes = allLevels.get(level);
-            String siblingHash;
-            ProofNode.Position siblingPosition;
-
-            // Check if the index is even or odd to find the sibling.
-            if (itemIndex % 2 == 0) {
-                // Sibling is to the right.
-                siblingPosition = ProofNode.Position.RIGHT;
-                // Handle the odd-node case where the sibling is the node itself.
-                if (itemIndex + 1 >= currentLevelNodes.size()) {
-                    siblingHash = currentLevelNodes.get(itemIndex);
-                } else {
-                    siblingHash = currentLevelNodes.get(itemIndex + 1);
-                }
-            } else {
-                // Sibling is to the left.
-                siblingPosition = ProofNode.Position.LEFT;
-                siblingHash = currentLevelNodes.get(itemIndex - 1);
-            }
-            
-            proof.add(new ProofNode(siblingHash, siblingPosition));
-            // Move up to the parent's index for the next level.
-            itemIndex = itemIndex / 2;
+    /**
+     * Generates one multiproof covering several items, instead of one proof per item.
+     * The multiproof lists the items' leaf indexes in ascending order, and its verify method
+     * expects the items in that order.
+     * @return The multiproof, or null if any item is not in the list.
+     */
+    public static MerkleMultiproof generateMerkleMultiproof(List<String> dataItems, List<String> itemsToProve) {
+        FlatMerkleTree tree = FlatMerkleTree.build(dataItems, MerkleEngine.Mode.HEX_COMPAT);
+        if (tree == null) return null;
+        int[] indices = new int[itemsToProve.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = tree.indexOf(itemsToProve.get(i));
+            if (indices[i] < 0) return null;
         }
-
-        return proof;
+        return tree.multiproof(indices);
     }
 
     /**
@@ -140,42 +103,50 @@ public class MerkleTree {
         return computedHash.equals(merkleRoot);
     }
 
+    /**
+     * Verifies many proofs against the same root at once, in parallel, hashing shared path
+     * segments only once. See MerkleBatchVerifier.
+     * @param leafCount How many items the tree was built from; every proof must fit a tree of that size.
+     * @return One result per (item, proof) pair.
+     */
+    public static boolean[] verifyMerkleProofs(List<String> items, List<List<ProofNode>> proofs, String merkleRoot, int leafCount) {
+        byte[] root = new byte[MerkleEngine.HASH_LENGTH];
+        MerkleEngine.fromHex(merkleRoot, root, 0);
+        return new MerkleBatchVerifier(root, MerkleEngine.Mode.HEX_COMPAT, leafCount, 1 << 16).verifyAll(items, proofs);
+    }
+
     // --- Helper methods from the previous steps and questions ---
     public static String buildMerkleRoot(List<String> dataItems) {
-        if (dataItems == null || dataItems.isEmpty()) return null;
-        List<String> levelHashes = new ArrayList<>();
-        for (String item : dataItems) {
-            levelHashes.add(getSHA256Hash(item));
-        }
-        while (levelHashes.size() > 1) {
-            levelHashes = buildNextLevel(levelHashes);
-        }
-        return levelHashes.get(0);
+        return buildMerkleRoot(dataItems, MerkleEngine.Mode.HEX_COMPAT);
     }
 
-    private static List<String> buildNextLevel(List<String> levelHashes) {
-        List<String> nextLevelHashes = new ArrayList<>();
-        for (int i = 0; i < levelHashes.size(); i += 2) {
-            String left = levelHashes.get(i);
-            String right = (i + 1 < levelHashes.size()) ? levelHashes.get(i + 1) : left;
-            nextLevelHashes.add(getSHA256Hash(left + right));
-        }
-        return nextLevelHashes;
+    /**
+     * Builds the root with the byte-oriented MerkleEngine.
+     * HEX_COMPAT gives the same root as always; RAW is faster but gives a different root.
+     */
+    public static String buildMerkleRoot(List<String> dataItems, MerkleEngine.Mode mode) {
+        return MerkleEngine.toHex(new MerkleEngine(mode).root(dataItems));
+    }
+
+    /**
+     * Builds the root with another hash function in place of SHA-256, e.g. SHA-512/256.
+     */
+    public static String buildMerkleRoot(List<String> dataItems, MerkleEngine.Mode mode, Hashing.Algorithm algorithm) {
+        return MerkleEngine.toHex(new MerkleEngine(mode, algorithm).root(dataItems));
+    }
+
+    /**
+     * Same root as buildMerkleRoot(dataItems, mode), built across the common fork-join pool.
+     */
+    public static String buildMerkleRootParallel(List<String> dataItems, MerkleEngine.Mode mode) {
+        return MerkleEngine.toHex(MerkleEngine.parallelRoot(dataItems, mode));
+    }
+
+    public static String buildMerkleRootParallel(List<String> dataItems, MerkleEngine.Mode mode, Hashing.Algorithm algorithm) {
+        return MerkleEngine.toHex(MerkleEngine.parallelRoot(dataItems, mode, algorithm));
     }
 
     private static String getSHA256Hash(String input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] encodedhash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder(2 * encodedhash.length);
-            for (byte b : encodedhash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
-        }
+        return Hashing.hex(Hashing.Algorithm.SHA_256, input);
     }
 }
\ No newline at end of file
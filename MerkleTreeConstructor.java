@@ -1,7 +1,3 @@
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -42,70 +38,16 @@ public class MerkleTreeConstructor {
      * THis part is done with the help of Gemini
      */
     public static String buildMerkleRoot(List<String> dataItems) {
-        // Handle empty or single-item lists as edge cases.
-        if (dataItems == null || dataItems.isEmpty()) {
-            return null;
-        }
-        if (dataItems.size() == 1) {
-            return getSHA256Hash(dataItems.get(0));
-        }
-
-        // 1. Create the initial list of leaf hashes.
-        List<String> levelHashes = new ArrayList<>();
-        for (String item : dataItems) {
-            levelHashes.add(getSHA256Hash(item));
-        }
-
-        // 2. Build the tree level by level until only one root hash remains.
-        while (levelHashes.size() > 1) {
-            List<String> nextLevelHashes = new ArrayList<>();
-            // Iterate through the current level in pairs.
-            for (int i = 0; i < levelHashes.size(); i += 2) {
-                String leftHash = levelHashes.get(i);
-                String rightHash;
-
-                // Check if a right-hand pair exists.
-                if (i + 1 < levelHashes.size()) {
-                    rightHash = levelHashes.get(i + 1);
-                } else {
-                    // This is an odd-numbered level. Duplicate the last hash. 
-                    rightHash = leftHash;
-                }
-
-                // Combine and hash the pair to create the parent hash.
-                String parentHash = getSHA256Hash(leftHash + rightHash);
-                nextLevelHashes.add(parentHash);
-            }
-            // Move to the next level up.
-            levelHashes = nextLevelHashes;
-        }
-
-        // 3. The last remaining hash is the Merkle Root.
-        return levelHashes.get(0);
+        // The level-by-level pairing (duplicating the last hash on odd levels) now lives in
+        // MerkleEngine, shared with MerkleTree. HEX_COMPAT keeps the roots this method always returned.
+        return MerkleEngine.toHex(new MerkleEngine(MerkleEngine.Mode.HEX_COMPAT).root(dataItems));
     }
 
     /**
-     * Helper function to compute the SHA-256 hash for a given input string.
-     * @param input The string to hash.
-     * @return The SHA-256 hash as a 64-character hexadecimal string.
+     * Same root as buildMerkleRoot, with the leaves and wide levels hashed across the common
+     * fork-join pool.
      */
-
-     //The same one used in HashFunctionDemo.java
-    private static String getSHA256Hash(String input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] encodedhash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder(2 * encodedhash.length);
-            for (byte b : encodedhash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
-        }
+    public static String buildMerkleRootParallel(List<String> dataItems) {
+        return MerkleEngine.toHex(MerkleEngine.parallelRoot(dataItems, MerkleEngine.Mode.HEX_COMPAT));
     }
 }
\ No newline at end of file
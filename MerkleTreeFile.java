@@ -0,0 +1,521 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * A Merkle tree kept in a file, so it survives restarts and can serve proofs as soon as it is
+ * opened.
+ *
+ * Layout: a 64-byte header (magic, version, mode, hash algorithm, leaf count, leaf capacity),
+ * then every level as a contiguous array of 32-byte digests, leaves first. Each level has room
+ * for capacity >> level nodes, so appending never moves existing nodes. Opening the file maps the
+ * levels with FileChannel.map and reads nothing else; proofs are read straight from the mapping.
+ *
+ * Changes are crash-safe through a write-ahead log next to the file: an append or update first
+ * computes every node it will change (the new leaves and their paths to the root), writes them
+ * with a checksum to the log and fsyncs it, then writes them into the tree and fsyncs that, and
+ * only then deletes the log. On open, a complete log is replayed and a torn one is discarded, so
+ * the tree is always either before or after the change. When the capacity is used up the tree is
+ * copied into a new file with twice the room, fsynced, mapped and only then renamed over the old
+ * one, so a failed growth leaves the old file in use.
+ *
+ * Not thread-safe. Capacity is limited to 2^25 leaves, so the leaf level (1 GB) fits in one
+ * mapping.
+ */
+public class MerkleTreeFile {
+
+    private static final int HASH_LENGTH = MerkleEngine.HASH_LENGTH;
+    private static final long MAGIC = 0x4d524b4c54524545L; // "MRKLTREE"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int LEAF_COUNT_OFFSET = 32;
+    private static final int CAPACITY_OFFSET = 40;
+    private static final String ALGORITHM = "SHA-256";
+    private static final long WAL_MAGIC = 0x4d524b4c57414c31L; // "MRKLWAL1"
+    // A level is mapped as one buffer, so the leaf level must stay below 2 GB.
+    private static final long MAX_CAPACITY = 1L << 25;
+
+    private final Path file;
+    private final Path wal;
+    private final MerkleEngine.Mode mode;
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] levels;
+    private long capacity;
+    private long leafCount;
+
+    private MerkleTreeFile(Path file, MerkleEngine.Mode mode) {
+        this.file = file;
+        this.wal = file.resolveSibling(file.getFileName() + ".wal");
+        this.mode = mode;
+    }
+
+    /**
+     * Creates an empty tree file with room for at least capacity leaves.
+     */
+    public static MerkleTreeFile create(Path file, MerkleEngine.Mode mode, long capacity) throws IOException {
+        writeTreeFile(file, mode, leafCapacityFor(capacity), 0, null);
+        return openNew(file);
+    }
+
+    /**
+     * Writes a whole in-memory tree to a new file in one pass.
+     */
+    public static MerkleTreeFile create(Path file, FlatMerkleTree tree) throws IOException {
+        writeTreeFile(file, tree.mode(), leafCapacityFor(tree.size()), tree.size(), (level, out) -> {
+            byte[] nodes = tree.level(level);
+            out.write(ByteBuffer.wrap(nodes, 0, tree.levelSize(level) * HASH_LENGTH));
+        });
+        return openNew(file);
+    }
+
+    // The smallest power of two, at least 2, that holds this many leaves.
+    private static long leafCapacityFor(long leaves) throws IOException {
+        if (leaves > MAX_CAPACITY) {
+            throw new IOException("A tree file holds at most " + MAX_CAPACITY + " leaves");
+        }
+        return Math.max(2, Long.highestOneBit(Math.max(2, leaves) - 1) << 1);
+    }
+
+    // Opens a file create has just written, removing it again if it cannot be opened.
+    private static MerkleTreeFile openNew(Path file) throws IOException {
+        try {
+            return open(file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Maps an existing tree file, first replaying or discarding a leftover write-ahead log.
+     */
+    public static MerkleTreeFile open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException(file + " is too short to be a Merkle tree file");
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION) {
+                throw new IOException(file + " is not a version " + VERSION + " Merkle tree file");
+            }
+            int modeOrdinal = header.getInt(12);
+            if (modeOrdinal < 0 || modeOrdinal >= MerkleEngine.Mode.values().length) {
+                throw new IOException(file + " has an unknown tree mode " + modeOrdinal);
+            }
+            byte[] algorithm = new byte[16];
+            header.get(16, algorithm);
+            if (!new String(algorithm, StandardCharsets.US_ASCII).trim().equals(ALGORITHM)) {
+                throw new IOException(file + " uses an unsupported hash algorithm");
+            }
+            long capacity = header.getLong(CAPACITY_OFFSET);
+            long leafCount = header.getLong(LEAF_COUNT_OFFSET);
+            if (capacity < 2 || capacity > MAX_CAPACITY || Long.bitCount(capacity) != 1) {
+                throw new IOException(file + " has an invalid capacity " + capacity);
+            }
+            if (leafCount < 0 || leafCount > capacity) {
+                throw new IOException(file + " has " + leafCount + " leaves but room for only " + capacity);
+            }
+            if (channel.size() < fileSize(capacity)) {
+                throw new IOException(file + " is truncated: " + channel.size() + " of " + fileSize(capacity) + " bytes");
+            }
+
+            MerkleTreeFile tree = new MerkleTreeFile(file, MerkleEngine.Mode.values()[modeOrdinal]);
+            tree.channel = channel;
+            tree.header = header;
+            tree.capacity = capacity;
+            tree.leafCount = leafCount;
+            tree.levels = mapLevels(channel, capacity);
+            tree.recover();
+            return tree;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public MerkleEngine.Mode mode() {
+        return mode;
+    }
+
+    public long size() {
+        return leafCount;
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    public int levelCount() {
+        return levelCountFor(leafCount);
+    }
+
+    public long levelSize(int level) {
+        return (leafCount + (1L << level) - 1) >>> level;
+    }
+
+    /**
+     * @return The root, or null while the tree is empty.
+     */
+    public byte[] root() {
+        return leafCount == 0 ? null : node(levelCount() - 1, 0);
+    }
+
+    public String rootHex() {
+        return MerkleEngine.toHex(root());
+    }
+
+    public byte[] node(int level, long index) {
+        byte[] node = new byte[HASH_LENGTH];
+        levels[level].get((int) (index * HASH_LENGTH), node);
+        return node;
+    }
+
+    /**
+     * Same proof as FlatMerkleTree.proofFor, read from the mapped file.
+     */
+    public List<MerkleTree.ProofNode> proofFor(long index) {
+        checkIndex(index);
+        List<MerkleTree.ProofNode> proof = new ArrayList<>();
+        for (int level = 0; level < levelCount() - 1; level++) {
+            MerkleTree.ProofNode.Position position = (index % 2 == 0)
+                    ? MerkleTree.ProofNode.Position.RIGHT
+                    : MerkleTree.ProofNode.Position.LEFT;
+            proof.add(new MerkleTree.ProofNode(MerkleEngine.toHex(node(level, siblingIndex(level, index))), position));
+            index /= 2;
+        }
+        return proof;
+    }
+
+    /**
+     * Same as FlatMerkleTree.proofDigests, read from the mapped file.
+     */
+    public byte[] proofDigests(long index) {
+        checkIndex(index);
+        int steps = levelCount() - 1;
+        byte[] proof = new byte[steps * HASH_LENGTH];
+        for (int level = 0; level < steps; level++) {
+            levels[level].get((int) (siblingIndex(level, index) * HASH_LENGTH), proof, level * HASH_LENGTH, HASH_LENGTH);
+            index /= 2;
+        }
+        return proof;
+    }
+
+    /**
+     * Appends one item. See appendAll.
+     */
+    public long append(String item) throws IOException {
+        return appendAll(List.of(item));
+    }
+
+    /**
+     * Appends items as new leaves, writing only the new leaves and their paths to the root.
+     * @return The index of the first new leaf.
+     */
+    public long appendAll(List<String> items) throws IOException {
+        long first = leafCount;
+        long newCount = leafCount + items.size();
+        if (items.isEmpty()) return first;
+        if (newCount > capacity) {
+            grow(newCount);
+        }
+        MerkleEngine engine = MerkleEngine.forCurrentThread(mode);
+        Map<Long, byte[]> changes = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            byte[] leaf = new byte[HASH_LENGTH];
+            engine.hashLeaf(items.get(i), leaf, 0);
+            changes.put(key(0, first + i), leaf);
+        }
+        rehashRange(changes, first, newCount, newCount);
+        commit(changes, newCount);
+        return first;
+    }
+
+    /**
+     * Replaces the item at a leaf, writing only the leaf and its path to the root.
+     */
+    public void update(long index, String item) throws IOException {
+        checkIndex(index);
+        byte[] leaf = new byte[HASH_LENGTH];
+        MerkleEngine.forCurrentThread(mode).hashLeaf(item, leaf, 0);
+        Map<Long, byte[]> changes = new HashMap<>();
+        changes.put(key(0, index), leaf);
+        rehashRange(changes, index, index + 1, leafCount);
+        commit(changes, leafCount);
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Works out the new value of every ancestor of the leaves [from, to) in a tree of count
+    // leaves, reading unchanged children from the file. Nothing is written yet.
+    private void rehashRange(Map<Long, byte[]> changes, long from, long to, long count) {
+        MerkleEngine engine = MerkleEngine.forCurrentThread(mode);
+        int height = levelCountFor(count);
+        for (int level = 0; level < height - 1; level++) {
+            long size = (count + (1L << level) - 1) >>> level;
+            long parentFrom = from / 2;
+            long parentTo = (to - 1) / 2 + 1;
+            for (long parent = parentFrom; parent < parentTo; parent++) {
+                long left = 2 * parent;
+                long right = left + 1 < size ? left + 1 : left;
+                byte[] node = new byte[HASH_LENGTH];
+                engine.hashPair(read(changes, level, left), 0, read(changes, level, right), 0, node, 0);
+                changes.put(key(level + 1, parent), node);
+            }
+            from = parentFrom;
+            to = parentTo;
+        }
+    }
+
+    private byte[] read(Map<Long, byte[]> changes, int level, long index) {
+        byte[] changed = changes.get(key(level, index));
+        return changed != null ? changed : node(level, index);
+    }
+
+    // Write-ahead log first, then the tree, then drop the log.
+    private void commit(Map<Long, byte[]> changes, long newCount) throws IOException {
+        Map<Long, byte[]> ordered = new TreeMap<>(changes);
+        writeLog(ordered, newCount);
+        apply(ordered, newCount);
+        Files.deleteIfExists(wal);
+    }
+
+    private void writeLog(Map<Long, byte[]> changes, long newCount) throws IOException {
+        ByteBuffer log = ByteBuffer.allocate(8 + 8 + 4 + changes.size() * (8 + HASH_LENGTH) + 8);
+        log.putLong(WAL_MAGIC).putLong(newCount).putInt(changes.size());
+        for (Map.Entry<Long, byte[]> change : changes.entrySet()) {
+            log.putLong(change.getKey()).put(change.getValue());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(log.array(), 0, log.position());
+        log.putLong(crc.getValue());
+        log.flip();
+        try (FileChannel out = FileChannel.open(wal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (log.hasRemaining()) {
+                out.write(log);
+            }
+            out.force(true);
+        }
+    }
+
+    private void apply(Map<Long, byte[]> changes, long newCount) {
+        for (Map.Entry<Long, byte[]> change : changes.entrySet()) {
+            long key = change.getKey();
+            levels[(int) (key >>> 58)].put((int) ((key & INDEX_MASK) * HASH_LENGTH), change.getValue());
+        }
+        for (MappedByteBuffer level : levels) {
+            level.force();
+        }
+        header.putLong(LEAF_COUNT_OFFSET, newCount);
+        header.force();
+        leafCount = newCount;
+    }
+
+    // Replays a complete log left by a crash; a log that fails its checksum never reached the tree.
+    private void recover() throws IOException {
+        if (!Files.exists(wal)) return;
+        ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(wal));
+        Map<Long, byte[]> changes = new TreeMap<>();
+        long newCount = -1;
+        if (log.remaining() >= 28 && log.getLong(0) == WAL_MAGIC) {
+            int entries = log.getInt(16);
+            long end = 20 + (long) entries * (8 + HASH_LENGTH);
+            if (entries >= 0 && end + 8 == log.limit()) {
+                CRC32 crc = new CRC32();
+                crc.update(log.array(), 0, (int) end);
+                if (crc.getValue() == log.getLong((int) end)) {
+                    newCount = log.getLong(8);
+                    log.position(20);
+                    for (int i = 0; i < entries; i++) {
+                        long key = log.getLong();
+                        int level = (int) (key >>> 58);
+                        if (level >= levels.length || (key & INDEX_MASK) >= levelCapacity(capacity, level)) {
+                            throw new IOException("Write-ahead log " + wal + " names a node outside the tree");
+                        }
+                        byte[] node = new byte[HASH_LENGTH];
+                        log.get(node);
+                        changes.put(key, node);
+                    }
+                }
+            }
+        }
+        if (newCount >= 0 && newCount <= capacity) {
+            apply(changes, newCount);
+        }
+        Files.deleteIfExists(wal);
+    }
+
+    // Copy-on-write growth: build and map the bigger file beside this one, then rename it into
+    // place. Until the rename succeeds this object keeps using the old file, untouched.
+    private void grow(long needed) throws IOException {
+        long newCapacity = capacity;
+        while (newCapacity < needed) newCapacity *= 2;
+        if (newCapacity > MAX_CAPACITY) {
+            throw new IOException("A tree file holds at most " + MAX_CAPACITY + " leaves");
+        }
+        Path bigger = file.resolveSibling(file.getFileName() + ".grow");
+        FileChannel newChannel = null;
+        try {
+            writeTreeFile(bigger, mode, newCapacity, leafCount, (level, out) -> {
+                ByteBuffer used = levels[level].duplicate();
+                used.limit((int) (levelSize(level) * HASH_LENGTH)).position(0);
+                out.write(used);
+            });
+            newChannel = FileChannel.open(bigger, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer newHeader = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            MappedByteBuffer[] newLevels = mapLevels(newChannel, newCapacity);
+            // The mappings follow the file, not its name, so they stay valid across the rename.
+            Files.move(bigger, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            FileChannel oldChannel = channel;
+            channel = newChannel;
+            header = newHeader;
+            levels = newLevels;
+            capacity = newCapacity;
+            newChannel = null;
+            oldChannel.close();
+        } finally {
+            if (newChannel != null) {
+                newChannel.close();
+                Files.deleteIfExists(bigger);
+            }
+        }
+    }
+
+    private interface LevelWriter {
+        void write(int level, FileChannel out) throws IOException;
+    }
+
+    // Writes a complete tree file (header, then every level padded to its capacity) and fsyncs it.
+    private static void writeTreeFile(Path target, MerkleEngine.Mode mode, long capacity, long leafCount,
+                                      LevelWriter levelWriter) throws IOException {
+        if (capacity > MAX_CAPACITY) {
+            throw new IOException("A tree file holds at most " + MAX_CAPACITY + " leaves");
+        }
+        ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+        head.putLong(MAGIC).putInt(VERSION).putInt(mode.ordinal());
+        head.put(Arrays.copyOf(ALGORITHM.getBytes(StandardCharsets.US_ASCII), 16));
+        head.putLong(leafCount).putLong(capacity);
+        head.clear();
+
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(head);
+            long offset = HEADER_SIZE;
+            int height = levelCountFor(capacity);
+            for (int level = 0; level < height; level++) {
+                if (levelWriter != null && level < levelCountFor(leafCount)) {
+                    out.position(offset);
+                    levelWriter.write(level, out);
+                }
+                offset += levelCapacity(capacity, level) * HASH_LENGTH;
+            }
+            // Extend the file to its full size; the unused tail of every level reads as zeros.
+            if (out.size() < offset) {
+                out.write(ByteBuffer.allocate(1), offset - 1);
+            }
+            out.force(true);
+        } catch (IOException | RuntimeException e) {
+            // Do not leave a partly written (and possibly very large) file behind.
+            Files.deleteIfExists(target);
+            throw e;
+        }
+    }
+
+    private static MappedByteBuffer[] mapLevels(FileChannel channel, long capacity) throws IOException {
+        int height = levelCountFor(capacity);
+        MappedByteBuffer[] levels = new MappedByteBuffer[height];
+        long offset = HEADER_SIZE;
+        for (int level = 0; level < height; level++) {
+            long bytes = levelCapacity(capacity, level) * HASH_LENGTH;
+            levels[level] = channel.map(FileChannel.MapMode.READ_WRITE, offset, bytes);
+            offset += bytes;
+        }
+        return levels;
+    }
+
+    // Header plus every level at full capacity.
+    private static long fileSize(long capacity) {
+        long size = HEADER_SIZE;
+        for (int level = 0; level < levelCountFor(capacity); level++) {
+            size += levelCapacity(capacity, level) * HASH_LENGTH;
+        }
+        return size;
+    }
+
+    private static long levelCapacity(long capacity, int level) {
+        return Math.max(1, capacity >>> level);
+    }
+
+    private static int levelCountFor(long leaves) {
+        if (leaves == 0) return 0;
+        return 65 - Long.numberOfLeadingZeros(leaves - 1);
+    }
+
+    private long siblingIndex(int level, long index) {
+        if (index % 2 == 1) return index - 1;
+        return index + 1 < levelSize(level) ? index + 1 : index;
+    }
+
+    private void checkIndex(long index) {
+        if (index < 0 || index >= leafCount) {
+            throw new IndexOutOfBoundsException("Leaf " + index + " of " + leafCount);
+        }
+    }
+
+    // A node's position packed into one long: level in the top 6 bits, index below.
+    private static final long INDEX_MASK = (1L << 58) - 1;
+
+    private static long key(int level, long index) {
+        return (long) level << 58 | index;
+    }
+
+    /**
+     * Appends transactions to a tree file and proves one of them.
+     * java MerkleTreeFile FILE [transactions...]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: java MerkleTreeFile FILE [transactions...]");
+            return;
+        }
+        Path path = Path.of(args[0]);
+        MerkleTreeFile tree = Files.exists(path) ? open(path) : create(path, MerkleEngine.Mode.HEX_COMPAT, 16);
+        try {
+            System.out.println("Opened " + path + " with " + tree.size() + " transactions");
+            List<String> added = Arrays.asList(args).subList(1, args.length);
+            if (!added.isEmpty()) {
+                tree.appendAll(added);
+                System.out.println("Appended " + added);
+            }
+            System.out.println("Merkle Root: " + tree.rootHex());
+            if (!added.isEmpty()) {
+                long index = tree.size() - 1;
+                List<MerkleTree.ProofNode> proof = tree.proofFor(index);
+                String item = added.get(added.size() - 1);
+                System.out.println("Proof for '" + item + "': " + proof);
+                System.out.println("Verification Result: "
+                        + (MerkleTree.verifyMerkleProof(item, proof, tree.rootHex()) ? "SUCCESS" : "FAILURE"));
+            }
+        } finally {
+            tree.close();
+        }
+    }
+}
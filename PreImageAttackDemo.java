@@ -1,54 +1,500 @@
+import java.security.DigestException;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.nio.charset.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 public class PreImageAttackDemo {
 
     // Define the character set you want to use for the brute-force attack.
-    private static final String CHARSET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789!@#$%^&*()-=_+{}[]:;'\"\\|,./<>?~`";
+    static final String CHARSET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789!@#$%^&*()-=_+{}[]:;'\"\\|,./<>?~`";
+
+    // How many candidate indexes a worker claims at once. Small enough that idle workers
+    // keep picking up work until the end, big enough that the shared counter isn't contended.
+    private static final long CHUNK_SIZE = 10_000;
+
+    // CHARSET is plain ASCII, so each character is exactly one UTF-8 byte.
+    private static final byte[] CHARSET_BYTES = CHARSET.getBytes(StandardCharsets.US_ASCII);
+    // Enough positions for any non-negative long index in base CHARSET.length().
+    private static final int MAX_CANDIDATE_LENGTH = 16;
+    // Far more workers than any machine has cores; one thread is started per worker.
+    private static final int MAX_THREADS = 1024;
 
     public static void main(String[] args) {
         try {
             String targetHash = "197d3b9b2170c13f11995d504950b79aae0142cf8f1f5b06e753c9820789f367";
-            System.out.println("Target Hash: " + targetHash);
-            System.out.println("The pre-image is the string \"RMIT\". Let's see if we can find it by brute force.");
-            
             long maxAttempts = 10000000; // Limit the search to 10 million attempts
-            boolean found = false;
-            
-            System.out.println("\nSearching for the pre-image (up to " + String.format("%,d", maxAttempts) + " attempts)");
-            
-            long startTime = System.currentTimeMillis();
-            long attempts;
-
-            for (attempts = 0; attempts < maxAttempts; attempts++) {
-                String testInput = generateSystematicString(attempts);
-                
-                String testHash = getSHA256Hash(testInput);
-                
-                if (testHash.equals(targetHash)) {
-                    System.out.println("!!! Pre-image FOUND !!!");
-                    System.out.println("Input: \"" + testInput + "\"");
-                    found = true;
-                    break;
+            int threads = Runtime.getRuntime().availableProcessors();
+            String targetsFile = null;
+            boolean useBloom = false;
+            int shardIndex = 0;
+            int shardCount = 1;
+            String checkpointFile = null;
+            long checkpointSeconds = 30;
+            String buildTableFile = null;
+            String tableFile = null;
+            Hashing.Algorithm algorithm = Hashing.Algorithm.SHA_256;
+
+            // Optional arguments: --threads N (use 1 for the original single-threaded run), --max N,
+            // --targets FILE (one hex SHA-256 per line, searched for all at once), --bloom,
+            // --shard k/N (search only part k of N of the keyspace, k counts from 0),
+            // --checkpoint FILE (save progress there and resume from it), --checkpoint-every SECONDS,
+            // --build-table FILE (hash the whole shard once and store a lookup table),
+            // --table FILE (answer the targets from a table instead of searching),
+            // --algorithm sha-256|sha-512/256|sha3-256 (the hash the targets were made with)
+            long[] range;
+            try {
+                for (int i = 0; i < args.length; i++) {
+                    if (args[i].equals("--threads")) {
+                        threads = (int) Math.min(Integer.MAX_VALUE, numberOf(args, i++));
+                    } else if (args[i].equals("--max")) {
+                        maxAttempts = numberOf(args, i++);
+                    } else if (args[i].equals("--targets")) {
+                        targetsFile = valueOf(args, i++);
+                    } else if (args[i].equals("--bloom")) {
+                        useBloom = true;
+                    } else if (args[i].equals("--shard")) {
+                        String shard = valueOf(args, i++);
+                        int slash = shard.indexOf('/');
+                        try {
+                            shardIndex = Integer.parseInt(shard.substring(0, Math.max(0, slash)));
+                            shardCount = Integer.parseInt(shard.substring(slash + 1));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("--shard expects k/N, e.g. 0/4, not " + shard);
+                        }
+                    } else if (args[i].equals("--checkpoint")) {
+                        checkpointFile = valueOf(args, i++);
+                    } else if (args[i].equals("--checkpoint-every")) {
+                        checkpointSeconds = numberOf(args, i++);
+                    } else if (args[i].equals("--build-table")) {
+                        buildTableFile = valueOf(args, i++);
+                    } else if (args[i].equals("--table")) {
+                        tableFile = valueOf(args, i++);
+                    } else if (args[i].equals("--algorithm")) {
+                        algorithm = Hashing.Algorithm.fromLabel(valueOf(args, i++));
+                    } else {
+                        throw new IllegalArgumentException("Unknown argument: " + args[i]);
+                    }
+                }
+                if (threads < 1 || threads > MAX_THREADS) {
+                    throw new IllegalArgumentException("--threads must be between 1 and " + MAX_THREADS + ", not " + threads);
+                }
+                if (maxAttempts < 0) {
+                    throw new IllegalArgumentException("--max must not be negative, not " + maxAttempts);
+                }
+                if (checkpointSeconds < 1) {
+                    throw new IllegalArgumentException("--checkpoint-every must be at least 1 second, not " + checkpointSeconds);
+                }
+                // The keyspace is [0, maxAttempts); each shard owns one contiguous slice of it.
+                range = SearchCheckpoint.shardRange(maxAttempts, shardIndex, shardCount);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                System.err.println("Usage: java PreImageAttackDemo [--threads N] [--max N] [--targets FILE [--bloom]]");
+                System.err.println("       [--shard k/N] [--checkpoint FILE [--checkpoint-every SECONDS]]");
+                System.err.println("       [--build-table FILE | --table FILE] [--algorithm NAME]");
+                return;
+            }
+
+            if ((buildTableFile != null || tableFile != null) && algorithm != Hashing.Algorithm.SHA_256) {
+                System.err.println("Lookup tables hold SHA-256 digests only; drop --algorithm or the table option.");
+                return;
+            }
+
+            if (buildTableFile != null) {
+                System.out.println("Building lookup table " + buildTableFile + " for indexes " + String.format("%,d", range[0])
+                        + " to " + String.format("%,d", range[1]) + " (" + threads + " threads)");
+                long buildStart = System.nanoTime();
+                PreImageTable.build(Path.of(buildTableFile), range[0], range[1], threads);
+                long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+                System.out.println("Table written in " + buildMillis + " milliseconds ("
+                        + String.format("%,d", Files.size(Path.of(buildTableFile))) + " bytes).");
+                return;
+            }
+
+            DigestSet targets;
+            if (targetsFile == null) {
+                targets = singleTarget(targetHash);
+                System.out.println("Target Hash: " + targetHash);
+                System.out.println("The pre-image is the string \"RMIT\". Let's see if we can find it by brute force.");
+            } else {
+                targets = DigestSet.load(Path.of(targetsFile), 32, useBloom);
+                System.out.println("Loaded " + String.format("%,d", targets.size()) + " target hashes from " + targetsFile
+                        + (useBloom ? " (with Bloom filter)" : ""));
+            }
+
+            if (tableFile != null) {
+                lookupTargets(Path.of(tableFile), targets);
+                return;
+            }
+
+            SearchCheckpoint checkpoint = null;
+            if (checkpointFile != null) {
+                checkpoint = SearchCheckpoint.open(Path.of(checkpointFile), shardIndex, shardCount, range[0], range[1],
+                        algorithm.jcaName());
+                if (checkpoint.next() > range[0]) {
+                    System.out.println("Resuming from checkpoint " + checkpointFile + " at index " + String.format("%,d", checkpoint.next()));
                 }
             }
+            System.out.println("\nSearching for the pre-image (indexes " + String.format("%,d", range[0]) + " to " + String.format("%,d", range[1])
+                    + " of " + String.format("%,d", maxAttempts) + ", shard " + shardIndex + "/" + shardCount + ", " + threads + " threads, "
+                    + algorithm.jcaName() + ")");
+
+            SearchResult result = parallelSearch(targets, range[0], range[1], threads, checkpoint, checkpointSeconds * 1000, algorithm);
+            long duration = result.elapsedNanos / 1_000_000;
 
-            long endTime = System.currentTimeMillis();
-            long duration = endTime - startTime;
-            
             System.out.println("\n--- Search Complete ---");
-            if (found) {
-                System.out.println("Success! The pre-image was found after " + String.format("%,d", attempts) + " attempts.");
+            int foundCount = 0;
+            for (int t = 0; t < targets.size(); t++) {
+                long index = result.foundIndexes[t];
+                if (index < 0) continue;
+                foundCount++;
+                String input = generateSystematicString(index);
+                System.out.println("!!! Pre-image FOUND !!!");
+                System.out.println("Input: \"" + input + "\" (candidate index " + String.format("%,d", index) + ")");
+                System.out.println("Hash of input: " + Hashing.hex(algorithm, input));
+            }
+            if (foundCount > 0) {
+                System.out.println("Success! " + foundCount + " of " + targets.size() + " pre-image(s) found after "
+                        + String.format("%,d", result.totalAttempts()) + " attempts across all threads.");
             } else {
-                System.out.println("Failure. The pre-image was NOT found after " + String.format("%,d", maxAttempts) + " attempts.");
+                System.out.println("Failure. The pre-image was NOT found after " + String.format("%,d", result.totalAttempts()) + " attempts.");
                 System.out.println("This demonstrates that finding a pre-image is computationally difficult.");
             }
             System.out.println("Time taken: " + duration + " milliseconds. Or " + (duration / 1000.0) + " seconds");
+            printRates(result);
+
+        } catch (IOException e) {
+            System.err.println("Could not read or write a targets, checkpoint or table file: " + e.getMessage());
+        } catch (DigestException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Search was interrupted.");
+        }
+    }
+
+    // The value after the option at args[i], e.g. the N of --threads N.
+    private static String valueOf(String[] args, int i) {
+        if (i + 1 >= args.length) {
+            throw new IllegalArgumentException(args[i] + " needs a value");
+        }
+        return args[i + 1];
+    }
+
+    private static long numberOf(String[] args, int i) {
+        String value = valueOf(args, i);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(args[i] + " expects a number, not " + value);
+        }
+    }
+
+    /**
+     * Answers every target from a precomputed table instead of brute force.
+     */
+    private static void lookupTargets(Path tableFile, DigestSet targets)
+            throws IOException, DigestException {
+        PreImageTable table = PreImageTable.open(tableFile);
+        try {
+            System.out.println("\nLooking up " + targets.size() + " target(s) in " + tableFile + " (indexes "
+                    + String.format("%,d", table.start()) + " to " + String.format("%,d", table.end()) + ")");
+            long lookupStart = System.nanoTime();
+            int foundCount = 0;
+            for (int t = 0; t < targets.size(); t++) {
+                long index = table.lookup(targets.get(t));
+                if (index < 0) continue;
+                foundCount++;
+                String input = generateSystematicString(index);
+                System.out.println("!!! Pre-image FOUND !!!");
+                System.out.println("Input: \"" + input + "\" (candidate index " + String.format("%,d", index) + ")");
+                System.out.println("Hash of input: " + getSHA256Hash(input));
+            }
+            double millis = (System.nanoTime() - lookupStart) / 1e6;
+            System.out.println("\n" + foundCount + " of " + targets.size() + " pre-image(s) found in the table. Time taken: "
+                    + String.format("%.3f", millis) + " milliseconds");
+        } finally {
+            table.close();
+        }
+    }
+
+    /**
+     * Holds what the workers found and how much work each of them did.
+     */
+    static class SearchResult {
+        long[] foundIndexes;   // candidate index per target entry, -1 if not found
+        long[] workerAttempts;
+        long[] workerNanos;
+        long elapsedNanos;
+
+        long totalAttempts() {
+            long total = 0;
+            for (long a : workerAttempts) total += a;
+            return total;
+        }
+    }
+
+    /**
+     * Searches for a single hex-encoded target hash.
+     */
+    static SearchResult parallelSearch(String targetHash, long maxAttempts, int threads)
+            throws InterruptedException {
+        return parallelSearch(singleTarget(targetHash), maxAttempts, threads);
+    }
+
+    // Decode the target once so the workers compare raw digests instead of hex strings.
+    private static DigestSet singleTarget(String targetHash) {
+        DigestSet targets = new DigestSet(1, 32, false);
+        targets.add(HexFormat.of().parseHex(targetHash));
+        return targets;
+    }
+
+    /**
+     * Splits the candidate indexes [0, maxAttempts) across a fixed pool of workers.
+     * Each worker keeps claiming the next CHUNK_SIZE indexes from a shared counter, so a fast
+     * worker simply takes more chunks than a slow one. Every candidate is hashed once and looked
+     * up in the target set; once all targets have been found the stop flag is raised and the
+     * others finish their current chunk and quit.
+     */
+    static SearchResult parallelSearch(DigestSet targets, long maxAttempts, int threads)
+            throws InterruptedException {
+        try {
+            return parallelSearch(targets, 0, maxAttempts, threads, null, 0);
+        } catch (IOException e) {
+            // Only checkpoint writes throw IOException, and this search has no checkpoint.
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Searches the indexes [start, end). With a checkpoint, the search starts from the
+     * checkpoint's low-water mark, skips targets it already found, and saves progress every
+     * checkpointMillis and once more at the end.
+     */
+    static SearchResult parallelSearch(DigestSet targets, long start, long end, int threads,
+                                       SearchCheckpoint checkpoint, long checkpointMillis)
+            throws InterruptedException, IOException {
+        return parallelSearch(targets, start, end, threads, checkpoint, checkpointMillis, Hashing.Algorithm.SHA_256);
+    }
+
+    /**
+     * The same search with another hash function in place of SHA-256.
+     */
+    static SearchResult parallelSearch(DigestSet targets, long start, long end, int threads,
+                                       SearchCheckpoint checkpoint, long checkpointMillis, Hashing.Algorithm algorithm)
+            throws InterruptedException, IOException {
+        SearchResult result = new SearchResult();
+        result.workerAttempts = new long[threads];
+        result.workerNanos = new long[threads];
+
+        SearchState state = new SearchState(targets, checkpoint != null ? checkpoint.next() : start, end, checkpoint);
+        if (checkpoint != null) {
+            for (Map.Entry<String, Long> entry : checkpoint.found().entrySet()) {
+                int target = targets.indexOf(HexFormat.of().parseHex(entry.getKey()), 0);
+                if (target >= 0 && state.foundIndexes.compareAndSet(target, -1, entry.getValue())) {
+                    state.remaining.decrementAndGet();
+                }
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ScheduledExecutorService saver = null;
+        if (checkpoint != null) {
+            saver = Executors.newSingleThreadScheduledExecutor();
+            saver.scheduleWithFixedDelay(() -> {
+                try {
+                    checkpoint.save();
+                } catch (IOException e) {
+                    System.err.println("Could not write checkpoint: " + e.getMessage());
+                }
+            }, checkpointMillis, checkpointMillis, TimeUnit.MILLISECONDS);
+        }
+
+        long startTime = System.nanoTime();
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int w = 0; w < threads; w++) {
+                futures.add(pool.submit(new SearchWorker(w, algorithm.newDigest(), state, result)));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+            if (saver != null) {
+                saver.shutdownNow();
+                saver.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        }
+        result.elapsedNanos = System.nanoTime() - startTime;
+        if (checkpoint != null) {
+            checkpoint.save();
+        }
+        result.foundIndexes = new long[targets.size()];
+        for (int t = 0; t < targets.size(); t++) {
+            result.foundIndexes[t] = state.foundIndexes.get(t);
+        }
+        return result;
+    }
+
+    /**
+     * Everything the workers of one search share.
+     */
+    private static class SearchState {
+        final DigestSet targets;
+        final long end;
+        final AtomicLong nextIndex;
+        final AtomicLongArray foundIndexes;
+        final AtomicInteger remaining;
+        final AtomicBoolean stop = new AtomicBoolean();
+        final SearchCheckpoint checkpoint;   // null when progress is not being saved
+
+        SearchState(DigestSet targets, long start, long end, SearchCheckpoint checkpoint) {
+            this.targets = targets;
+            this.end = end;
+            this.nextIndex = new AtomicLong(start);
+            this.foundIndexes = new AtomicLongArray(targets.size());
+            for (int t = 0; t < targets.size(); t++) {
+                foundIndexes.set(t, -1);
+            }
+            this.remaining = new AtomicInteger(targets.size());
+            this.checkpoint = checkpoint;
+        }
+    }
+
+    /**
+     * One search thread. The hot loop works entirely on buffers allocated once per worker:
+     * the candidate is advanced in place like an odometer, hashed into a reused output array
+     * and looked up in the target set, so nothing is allocated per attempt.
+     */
+    private static class SearchWorker implements Callable<Void> {
+        private final int id;
+        private final MessageDigest digest;
+        private final SearchState state;
+        private final SearchResult result;
+
+        SearchWorker(int id, MessageDigest digest, SearchState state, SearchResult result) {
+            this.id = id;
+            this.digest = digest;
+            this.state = state;
+            this.result = result;
+        }
+
+        @Override
+        public Void call() throws DigestException {
+            byte[] hash = new byte[digest.getDigestLength()];
+            byte[] digits = new byte[MAX_CANDIDATE_LENGTH];
+            byte[] candidate = new byte[MAX_CANDIDATE_LENGTH];
+            long attempts = 0;
+            long start = System.nanoTime();
+
+            chunks:
+            while (!state.stop.get() && state.remaining.get() > 0) {
+                long from = state.nextIndex.getAndAdd(CHUNK_SIZE);
+                if (from >= state.end) break;
+                long to = Math.min(from + CHUNK_SIZE, state.end);
+
+                int length = setCandidate(from, digits, candidate);
+                for (long index = from; index < to; index++) {
+                    digest.update(candidate, 0, length);
+                    digest.digest(hash, 0, hash.length);
+                    attempts++;
+
+                    int target = state.targets.indexOf(hash, 0);
+                    if (target >= 0 && state.foundIndexes.compareAndSet(target, -1, index)) {
+                        if (state.checkpoint != null) {
+                            state.checkpoint.recordFound(hash, index);
+                        }
+                        if (state.remaining.decrementAndGet() == 0) {
+                            state.stop.set(true);
+                            break chunks;
+                        }
+                    }
+                    length = nextCandidate(digits, candidate, length);
+                }
+                if (state.checkpoint != null) {
+                    state.checkpoint.chunkDone(from, to);
+                }
+            }
+
+            // Each worker only writes its own slot; the main thread reads them after future.get().
+            result.workerAttempts[id] = attempts;
+            result.workerNanos[id] = System.nanoTime() - start;
+            return null;
+        }
+    }
+
+    /**
+     * Writes the candidate for an index into the buffers, using the same base conversion as
+     * generateSystematicString. digits holds the CHARSET positions, candidate the matching bytes.
+     * @return The candidate length.
+     */
+    static int setCandidate(long index, byte[] digits, byte[] candidate) {
+        int base = CHARSET_BYTES.length;
+        int length = 1;
+        for (long rest = index / base; rest > 0; rest /= base) {
+            length++;
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            digits[i] = (byte) (index % base);
+            candidate[i] = CHARSET_BYTES[digits[i]];
+            index /= base;
+        }
+        return length;
+    }
+
+    /**
+     * Advances the candidate to the next index in place, carrying like an odometer.
+     * When every position rolls over the string grows by one: "`" -> "ba", just like generateSystematicString.
+     * @return The new candidate length.
+     */
+    static int nextCandidate(byte[] digits, byte[] candidate, int length) {
+        int base = CHARSET_BYTES.length;
+        for (int i = length - 1; i >= 0; i--) {
+            int digit = digits[i] + 1;
+            if (digit < base) {
+                digits[i] = (byte) digit;
+                candidate[i] = CHARSET_BYTES[digit];
+                return length;
+            }
+            digits[i] = 0;
+            candidate[i] = CHARSET_BYTES[0];
+        }
+        // Every position rolled over, e.g. "``" -> "baa".
+        digits[0] = 1;
+        candidate[0] = CHARSET_BYTES[1];
+        digits[length] = 0;
+        candidate[length] = CHARSET_BYTES[0];
+        return length + 1;
+    }
 
-        } catch (NoSuchAlgorithmException e) {
-            System.err.println("SHA-256 algorithm not found.");
-            e.printStackTrace();
+    private static void printRates(SearchResult result) {
+        double seconds = result.elapsedNanos / 1e9;
+        System.out.println("Aggregate rate: " + String.format("%,.0f", result.totalAttempts() / seconds) + " hashes/second");
+        for (int w = 0; w < result.workerAttempts.length; w++) {
+            double workerSeconds = result.workerNanos[w] / 1e9;
+            double rate = workerSeconds > 0 ? result.workerAttempts[w] / workerSeconds : 0;
+            System.out.println("  Worker " + w + ": " + String.format("%,d", result.workerAttempts[w]) + " attempts, "
+                    + String.format("%,.0f", rate) + " hashes/second");
         }
     }
 
@@ -56,10 +502,10 @@ public class PreImageAttackDemo {
      * **NEW HELPER FUNCTION**
      * Generates a systematic string based on an index and a character set.
      * This is analogous to converting a number to a different base.
-     * 0 -> "a", 1 -> "b", ..., 94 -> "`", 95 -> "aa"
+     * 0 -> "a", 1 -> "b", ..., 93 -> "`", 94 -> "ba" ("a" is the zero digit, so only "a" itself starts with it)
      * Done with help from gemini
      */
-    private static String generateSystematicString(long index) {
+    static String generateSystematicString(long index) {
         if (index < 0) return "";
         
         long base = CHARSET.length();
@@ -80,17 +526,7 @@ public class PreImageAttackDemo {
     }
     
     // The same hashing algorithm from before
-    private static String getSHA256Hash(String input) throws NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        byte[] encodedhash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-        StringBuilder hexString = new StringBuilder(2 * encodedhash.length);
-        for (byte b : encodedhash) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) {
-                hexString.append('0');
-            }
-            hexString.append(hex);
-        }
-        return hexString.toString();
+    private static String getSHA256Hash(String input) {
+        return Hashing.hex(Hashing.Algorithm.SHA_256, input);
     }
 }
\ No newline at end of file
@@ -0,0 +1,369 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A precomputed lookup table for the PreImageAttackDemo keyspace, so the hashing done once
+ * can answer any later target over the same CHARSET without searching again.
+ *
+ * The file holds one 16-byte record per candidate index: the first 8 bytes of the candidate's
+ * SHA-256 digest followed by the index, sorted by digest prefix (unsigned). A lookup maps the
+ * file and binary-searches the prefix, then re-hashes the candidate to confirm the full digest,
+ * since different candidates can share a prefix.
+ *
+ * Building is done in sorted runs: each worker hashes one slice of the keyspace, sorts it and
+ * writes it to a temporary run file, then the runs are merged into the table, at most
+ * MERGE_FAN_IN at a time. Only the runs being built and one read buffer per merged run are ever
+ * on the heap. Like SearchCheckpoint, the table is written to a temp file, fsynced and renamed
+ * into place, so a crash never leaves a truncated table behind.
+ */
+public class PreImageTable {
+
+    private static final long MAGIC = 0x50494d4754424c31L; // "PIMGTBL1"
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 16;
+    // Candidates per sorted run; two long[] of this size per busy worker.
+    private static final int RUN_SIZE = 1 << 20;
+    // Runs merged in one pass; more runs than this are first merged into larger ones.
+    private static final int MERGE_FAN_IN = 64;
+    // Records per mapped segment, so tables larger than 2 GB can still be mapped.
+    private static final long SEGMENT_RECORDS = 1L << 26;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long start;
+    private final long end;
+    private final long records;
+    private final MessageDigest digest;
+    private final byte[] digits = new byte[16];
+    private final byte[] candidate = new byte[16];
+    private final byte[] hash = new byte[32];
+
+    private PreImageTable(FileChannel channel, MappedByteBuffer[] segments, long start, long end, long records) {
+        this.channel = channel;
+        this.segments = segments;
+        this.start = start;
+        this.end = end;
+        this.records = records;
+        this.digest = Hashing.Algorithm.SHA_256.newDigest();
+    }
+
+    /**
+     * Builds a table over the candidate indexes [start, end) and writes it to file.
+     */
+    public static void build(Path file, long start, long end, int threads)
+            throws IOException, InterruptedException {
+        build(file, start, end, threads, RUN_SIZE);
+    }
+
+    // runSize is a parameter so tests can force several merge passes without hashing millions.
+    static void build(Path file, long start, long end, int threads, int runSize)
+            throws IOException, InterruptedException {
+        // Every temporary file is listed here as soon as it is named, so all of them are removed
+        // whether the build succeeds or not.
+        List<Path> runs = new ArrayList<>();
+        try {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<Path>> futures = new ArrayList<>();
+                for (long from = start; from < end; from += runSize) {
+                    Path runFile = file.resolveSibling(file.getFileName() + ".run" + runs.size());
+                    runs.add(runFile);
+                    long to = Math.min(from + runSize, end);
+                    MessageDigest digest = Hashing.Algorithm.SHA_256.newDigest();
+                    long runStart = from;
+                    futures.add(pool.submit(() -> writeRun(runFile, runStart, to, digest)));
+                }
+                for (Future<Path> future : futures) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                throw new IOException("Building a table run failed", e.getCause());
+            } finally {
+                // Wait for runs still being written, so none appears after the clean-up below.
+                pool.shutdownNow();
+                pool.awaitTermination(1, TimeUnit.MINUTES);
+            }
+
+            mergeRuns(runs, file, start, end);
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    /**
+     * Hashes [from, to), sorts the records by prefix and writes them to a run file.
+     */
+    private static Path writeRun(Path runFile, long from, long to, MessageDigest digest) throws IOException, DigestException {
+        int count = (int) (to - from);
+        long[] prefixes = new long[count];
+        long[] keys = new long[count];
+        byte[] digits = new byte[16];
+        byte[] candidate = new byte[16];
+        byte[] hash = new byte[digest.getDigestLength()];
+
+        int length = PreImageAttackDemo.setCandidate(from, digits, candidate);
+        for (int i = 0; i < count; i++) {
+            digest.update(candidate, 0, length);
+            digest.digest(hash, 0, hash.length);
+            prefixes[i] = ByteBuffer.wrap(hash).getLong();
+            length = PreImageAttackDemo.nextCandidate(digits, candidate, length);
+        }
+
+        // Sort a single long[] whose high bits are the prefix and low bits the run offset, then
+        // finish with an insertion pass on the full prefix. Keys only tie when two prefixes share
+        // their top bits, so the insertion pass has almost nothing to move.
+        int offsetBits = 64 - Long.numberOfLeadingZeros(Math.max(1, count - 1));
+        long offsetMask = (1L << offsetBits) - 1;
+        for (int i = 0; i < count; i++) {
+            // Flipping the sign bit makes signed order match unsigned prefix order.
+            keys[i] = ((prefixes[i] ^ Long.MIN_VALUE) & ~offsetMask) | i;
+        }
+        Arrays.sort(keys);
+        for (int i = 1; i < count; i++) {
+            long key = keys[i];
+            long prefix = prefixes[(int) (key & offsetMask)];
+            int j = i - 1;
+            while (j >= 0 && Long.compareUnsigned(prefixes[(int) (keys[j] & offsetMask)], prefix) > 0) {
+                keys[j + 1] = keys[j];
+                j--;
+            }
+            keys[j + 1] = key;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runFile), 1 << 16))) {
+            for (long key : keys) {
+                int offset = (int) (key & offsetMask);
+                out.writeLong(prefixes[offset]);
+                out.writeLong(from + offset);
+            }
+        }
+        return runFile;
+    }
+
+    /**
+     * One open run file during the merge, holding its current record.
+     */
+    private static class RunReader {
+        final DataInputStream in;
+        long prefix;
+        long index;
+
+        RunReader(Path run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                prefix = in.readLong();
+                index = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                in.close();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Merges the runs into the table file. Intermediate runs from extra passes are added to runs,
+     * so the caller removes them along with the rest.
+     */
+    private static void mergeRuns(List<Path> runs, Path file, long start, long end) throws IOException {
+        // 1. While there are too many runs for one pass, merge them MERGE_FAN_IN at a time.
+        List<Path> remaining = new ArrayList<>(runs);
+        while (remaining.size() > MERGE_FAN_IN) {
+            List<Path> merged = new ArrayList<>();
+            for (int i = 0; i < remaining.size(); i += MERGE_FAN_IN) {
+                List<Path> group = remaining.subList(i, Math.min(i + MERGE_FAN_IN, remaining.size()));
+                Path mergedRun = file.resolveSibling(file.getFileName() + ".run" + runs.size());
+                runs.add(mergedRun);
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(mergedRun), 1 << 16))) {
+                    merge(group, out);
+                }
+                for (Path run : group) {
+                    Files.deleteIfExists(run);
+                }
+                merged.add(mergedRun);
+            }
+            remaining = merged;
+        }
+
+        // 2. The last pass writes the table to a temp file, fsyncs it and renames it into place.
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+                out.writeLong(MAGIC);
+                out.writeLong(start);
+                out.writeLong(end);
+                out.writeLong(end - start);
+                // The rest of the header records which CHARSET the indexes refer to.
+                byte[] charsetHash = sha256(PreImageAttackDemo.CHARSET.getBytes(StandardCharsets.US_ASCII));
+                out.write(charsetHash);
+
+                merge(remaining, out);
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Writes the records of the sorted runs to out in prefix order.
+    private static void merge(List<Path> runs, DataOutputStream out) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>((a, b) -> Long.compareUnsigned(a.prefix, b.prefix));
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.advance()) queue.add(reader);
+            }
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                out.writeLong(reader.prefix);
+                out.writeLong(reader.index);
+                if (reader.advance()) queue.add(reader);
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.in.close();
+            }
+        }
+    }
+
+    /**
+     * Maps an existing table file for lookups. The instance is not thread-safe.
+     * @throws IOException If the file is not a table, was built for another CHARSET, or its
+     *                     size does not match the header.
+     */
+    public static PreImageTable open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException(file + " is too short to be a pre-image table");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getLong() != MAGIC) {
+                throw new IOException(file + " is not a pre-image table");
+            }
+            long start = header.getLong();
+            long end = header.getLong();
+            long records = header.getLong();
+            byte[] charsetHash = new byte[32];
+            header.get(charsetHash);
+            if (!Arrays.equals(charsetHash, sha256(PreImageAttackDemo.CHARSET.getBytes(StandardCharsets.US_ASCII)))) {
+                throw new IOException(file + " was built for a different CHARSET");
+            }
+            if (start < 0 || start > end || records != end - start) {
+                throw new IOException(file + " has an invalid range [" + start + ", " + end + ") for " + records + " records");
+            }
+            // Every index in the range has exactly one record, so the size is fixed by the header.
+            if (records > (channel.size() - HEADER_SIZE) / RECORD_SIZE) {
+                throw new IOException(file + " is truncated: it has room for fewer than " + records + " records");
+            }
+            long expectedSize = HEADER_SIZE + records * RECORD_SIZE;
+            if (channel.size() != expectedSize) {
+                throw new IOException(file + " should be " + expectedSize + " bytes for " + records + " records but is "
+                        + channel.size());
+            }
+
+            int segmentCount = (int) ((records + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS);
+            MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+            for (int s = 0; s < segmentCount; s++) {
+                long first = s * SEGMENT_RECORDS;
+                long count = Math.min(SEGMENT_RECORDS, records - first);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * RECORD_SIZE, count * RECORD_SIZE);
+            }
+            return new PreImageTable(channel, segments, start, end, records);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Finds the candidate index whose SHA-256 digest equals target.
+     * @return The index, or -1 if no candidate in the table's range hashes to target.
+     */
+    public long lookup(byte[] target) throws DigestException {
+        long prefix = ByteBuffer.wrap(target).getLong();
+
+        // Binary search for the first record whose prefix is >= the target prefix.
+        long low = 0;
+        long high = records;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(prefixAt(mid), prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        // Several candidates may share the prefix; confirm each by hashing it again.
+        for (long record = low; record < records && prefixAt(record) == prefix; record++) {
+            long index = indexAt(record);
+            int length = PreImageAttackDemo.setCandidate(index, digits, candidate);
+            digest.update(candidate, 0, length);
+            digest.digest(hash, 0, hash.length);
+            if (Arrays.equals(hash, target)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    public long start() {
+        return start;
+    }
+
+    public long end() {
+        return end;
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long prefixAt(long record) {
+        return segments[(int) (record / SEGMENT_RECORDS)].getLong((int) (record % SEGMENT_RECORDS) * RECORD_SIZE);
+    }
+
+    private long indexAt(long record) {
+        return segments[(int) (record / SEGMENT_RECORDS)].getLong((int) (record % SEGMENT_RECORDS) * RECORD_SIZE + 8);
+    }
+
+    private static byte[] sha256(byte[] input) {
+        return Hashing.hash(Hashing.Algorithm.SHA_256, input);
+    }
+}
@@ -0,0 +1,178 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Progress of one shard of a pre-image search, kept so a restarted run can carry on where
+ * the last one stopped.
+ *
+ * Workers finish chunks out of order, so the checkpoint tracks a low-water mark: every index
+ * below "next" has been searched. Chunks that finish ahead of it wait in a small map until
+ * the gap below them closes. On disk it is a short text file, written to a temp file, fsynced
+ * and then atomically renamed over the old one, so a crash leaves either the old or the new
+ * checkpoint and never half of one.
+ */
+public class SearchCheckpoint {
+
+    final Path file;
+    final int shardIndex;
+    final int shardCount;
+    final long start;      // first index of this shard
+    final long end;        // one past the last index of this shard
+    final String algorithm; // MessageDigest name of the hash being searched
+    private long next;     // every index in [start, next) has been searched
+    private final TreeMap<Long, Long> finishedAhead = new TreeMap<>(); // chunk start -> chunk end, above next
+    private final Map<String, Long> found = new LinkedHashMap<>();     // hex digest -> candidate index
+
+    SearchCheckpoint(Path file, int shardIndex, int shardCount, long start, long end, String algorithm) {
+        this.file = file;
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+        this.start = start;
+        this.end = end;
+        this.algorithm = algorithm;
+        this.next = start;
+    }
+
+    /**
+     * Works out which part of [0, keyspace) belongs to shard k of n (k counts from 0).
+     * The first keyspace % n shards get one extra index so the shards cover everything.
+     * @return {start, end} of the shard.
+     */
+    static long[] shardRange(long keyspace, int shardIndex, int shardCount) {
+        if (shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("Shard " + shardIndex + "/" + shardCount + " is out of range");
+        }
+        long size = keyspace / shardCount;
+        long extra = keyspace % shardCount;
+        long start = shardIndex * size + Math.min(shardIndex, extra);
+        long end = start + size + (shardIndex < extra ? 1 : 0);
+        return new long[] { start, end };
+    }
+
+    /**
+     * Opens the checkpoint for this shard, resuming from the file if it already exists.
+     * @throws IOException If the file exists but belongs to a different shard, keyspace or hash,
+     *                     or its progress lies outside the shard.
+     */
+    static SearchCheckpoint open(Path file, int shardIndex, int shardCount, long start, long end, String algorithm)
+            throws IOException {
+        SearchCheckpoint checkpoint = new SearchCheckpoint(file, shardIndex, shardCount, start, end, algorithm);
+        if (!Files.exists(file)) {
+            return checkpoint;
+        }
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Map<String, String> values = new LinkedHashMap<>();
+        try {
+            for (String line : lines) {
+                if (line.startsWith("#") || !line.contains("=")) continue;
+                String key = line.substring(0, line.indexOf('='));
+                String value = line.substring(line.indexOf('=') + 1);
+                if (key.equals("found")) {
+                    String[] parts = value.split(" ");
+                    long index = Long.parseLong(parts[1]);
+                    if (index < start || index >= end) {
+                        throw new IOException("Checkpoint " + file + " records a find at " + index + ", outside its shard");
+                    }
+                    checkpoint.found.put(parts[0], index);
+                } else {
+                    values.put(key, value);
+                }
+            }
+
+            String shard = shardIndex + "/" + shardCount;
+            if (!shard.equals(values.get("shard"))
+                    || start != Long.parseLong(values.getOrDefault("start", "-1"))
+                    || end != Long.parseLong(values.getOrDefault("end", "-1"))) {
+                throw new IOException("Checkpoint " + file + " is for shard " + values.get("shard") + " ["
+                        + values.get("start") + ", " + values.get("end") + "), not shard " + shard + " [" + start + ", " + end + ")");
+            }
+            // Checkpoints written before the algorithm was recorded were all SHA-256.
+            String saved = values.getOrDefault("algorithm", "SHA-256");
+            if (!saved.equals(algorithm)) {
+                throw new IOException("Checkpoint " + file + " is for a " + saved + " search, not " + algorithm);
+            }
+            if (!values.containsKey("next")) {
+                throw new IOException("Checkpoint " + file + " has no next index");
+            }
+            long next = Long.parseLong(values.get("next"));
+            if (next < start || next > end) {
+                throw new IOException("Checkpoint " + file + " resumes at " + next + ", outside [" + start + ", " + end + "]");
+            }
+            checkpoint.next = next;
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IOException("Checkpoint " + file + " is corrupt", e);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * @return The first index not yet known to be searched; a resumed run starts here.
+     */
+    synchronized long next() {
+        return next;
+    }
+
+    synchronized Map<String, Long> found() {
+        return new LinkedHashMap<>(found);
+    }
+
+    /**
+     * Records that every index in [from, to) has been searched.
+     */
+    synchronized void chunkDone(long from, long to) {
+        if (from != next) {
+            finishedAhead.put(from, to);
+            return;
+        }
+        next = to;
+        // Close any gaps the finished chunk has just filled.
+        Long following;
+        while ((following = finishedAhead.remove(next)) != null) {
+            next = following;
+        }
+    }
+
+    synchronized void recordFound(byte[] digest, long index) {
+        found.put(HexFormat.of().formatHex(digest), index);
+    }
+
+    /**
+     * Writes the checkpoint durably: temp file, fsync, then atomic rename over the old one.
+     */
+    void save() throws IOException {
+        StringBuilder text = new StringBuilder("# PreImageAttackDemo checkpoint\n");
+        synchronized (this) {
+            text.append("shard=").append(shardIndex).append('/').append(shardCount).append('\n');
+            text.append("start=").append(start).append('\n');
+            text.append("end=").append(end).append('\n');
+            text.append("algorithm=").append(algorithm).append('\n');
+            text.append("next=").append(next).append('\n');
+            for (Map.Entry<String, Long> entry : found.entrySet()) {
+                text.append("found=").append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+            }
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
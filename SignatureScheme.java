@@ -0,0 +1,196 @@
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The signature schemes the demos can use, all from the JDK's own providers.
+ *
+ * Each scheme knows how to make a key pair and which Signature algorithm goes with it, so code
+ * that signs only names a scheme instead of hard-coding "RSA" and "SHA256withRSA". main runs every
+ * scheme over the same messages and compares key generation, signing and verification rates and
+ * signature sizes.
+ */
+public enum SignatureScheme {
+    RSA_2048("rsa-2048", "RSA", 2048, "SHA256withRSA"),
+    RSA_3072("rsa-3072", "RSA", 3072, "SHA256withRSA"),
+    RSA_4096("rsa-4096", "RSA", 4096, "SHA256withRSA"),
+    ECDSA_P256("ecdsa-p256", "EC", 256, "SHA256withECDSA"),
+    ED25519("ed25519", "Ed25519", 255, "Ed25519");
+
+    private final String label;
+    private final String keyAlgorithm;
+    private final int keyBits;
+    private final String signatureAlgorithm;
+
+    SignatureScheme(String label, String keyAlgorithm, int keyBits, String signatureAlgorithm) {
+        this.label = label;
+        this.keyAlgorithm = keyAlgorithm;
+        this.keyBits = keyBits;
+        this.signatureAlgorithm = signatureAlgorithm;
+    }
+
+    /**
+     * @return The name used on the command line, e.g. "ed25519".
+     */
+    public String label() {
+        return label;
+    }
+
+    /**
+     * @return The Signature algorithm for this scheme's keys.
+     */
+    public String signatureAlgorithm() {
+        return signatureAlgorithm;
+    }
+
+    /**
+     * @return The key size in bits, e.g. 255 for Ed25519.
+     */
+    public int keyBits() {
+        return keyBits;
+    }
+
+    public KeyPair generateKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance(keyAlgorithm);
+        if (this == ECDSA_P256) {
+            // Name the curve rather than trust the provider's default for 256 bits.
+            keyGen.initialize(new ECGenParameterSpec("secp256r1"));
+        } else {
+            // The Ed25519 generator accepts only 255, so its key size is checked here too.
+            keyGen.initialize(keyBits);
+        }
+        return keyGen.generateKeyPair();
+    }
+
+    /**
+     * A Signature for this scheme, ready to sign with the key pair's private key.
+     */
+    public Signature signer(KeyPair keyPair) throws GeneralSecurityException {
+        return signer(keyPair.getPrivate());
+    }
+
+    /**
+     * A Signature for this scheme, ready to sign with the private key.
+     */
+    public Signature signer(PrivateKey privateKey) throws GeneralSecurityException {
+        Signature signature = Signature.getInstance(signatureAlgorithm);
+        signature.initSign(privateKey);
+        return signature;
+    }
+
+    /**
+     * A Signature for this scheme, ready to verify with the key pair's public key.
+     */
+    public Signature verifier(KeyPair keyPair) throws GeneralSecurityException {
+        return verifier(keyPair.getPublic());
+    }
+
+    /**
+     * A Signature for this scheme, ready to verify with the public key.
+     */
+    public Signature verifier(PublicKey publicKey) throws GeneralSecurityException {
+        Signature signature = Signature.getInstance(signatureAlgorithm);
+        signature.initVerify(publicKey);
+        return signature;
+    }
+
+    /**
+     * @throws IllegalArgumentException If no scheme has this label.
+     */
+    public static SignatureScheme fromLabel(String label) {
+        for (SignatureScheme scheme : values()) {
+            if (scheme.label.equalsIgnoreCase(label)) return scheme;
+        }
+        throw new IllegalArgumentException("Unknown signature scheme '" + label + "'; expected one of " + labels());
+    }
+
+    private static List<String> labels() {
+        List<String> labels = new ArrayList<>();
+        for (SignatureScheme scheme : values()) {
+            labels.add(scheme.label);
+        }
+        return labels;
+    }
+
+    // Runs op repeatedly for about budgetMillis and returns operations per second.
+    private interface Op {
+        void run() throws GeneralSecurityException;
+    }
+
+    private static double rate(Op op, long budgetMillis) throws GeneralSecurityException {
+        long budget = budgetMillis * 1_000_000;
+        long start = System.nanoTime();
+        long elapsed;
+        long ops = 0;
+        do {
+            op.run();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < budget);
+        return ops * 1e9 / elapsed;
+    }
+
+    /**
+     * java SignatureScheme [millis per measurement] [scheme labels...]
+     * Compares key generation, signing and verification rates and signature size per scheme.
+     */
+    public static void main(String[] args) throws GeneralSecurityException {
+        long budget = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        List<SignatureScheme> schemes = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            schemes.add(fromLabel(args[i]));
+        }
+        if (schemes.isEmpty()) {
+            schemes = List.of(values());
+        }
+
+        // The same 1024 messages for every scheme.
+        byte[][] messages = new byte[1024][];
+        Iterator<String> generated = SignaturePipeline.syntheticMessages(messages.length);
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = generated.next().getBytes(StandardCharsets.UTF_8);
+        }
+
+        System.out.println("--- Signature schemes, one thread, " + budget + " ms per measurement ---");
+        System.out.println(String.format("%-11s %5s %12s %12s %12s %10s", "scheme", "bits", "keygen/s", "sign/s", "verify/s", "sig bytes"));
+        for (SignatureScheme scheme : schemes) {
+            KeyPair keyPair = scheme.generateKeyPair();
+            Signature signer = scheme.signer(keyPair);
+            Signature verifier = scheme.verifier(keyPair);
+
+            // 1. Sign every message once, for the sizes, the verify workload and as a warm-up.
+            byte[][] signatures = new byte[messages.length][];
+            long signatureBytes = 0;
+            for (int i = 0; i < messages.length; i++) {
+                signer.update(messages[i]);
+                signatures[i] = signer.sign();
+                signatureBytes += signatures[i].length;
+            }
+
+            // 2. Time each operation over the same messages.
+            int[] next = new int[1];
+            double keygen = rate(scheme::generateKeyPair, budget);
+            double sign = rate(() -> {
+                signer.update(messages[next[0]++ & (messages.length - 1)]);
+                signer.sign();
+            }, budget);
+            boolean[] allVerified = { true };
+            double verify = rate(() -> {
+                int i = next[0]++ & (messages.length - 1);
+                verifier.update(messages[i]);
+                allVerified[0] &= verifier.verify(signatures[i]);
+            }, budget);
+
+            System.out.println(String.format("%-11s %5d %12.1f %12.1f %12.1f %10.1f%s", scheme.label, scheme.keyBits, keygen, sign, verify,
+                    (double) signatureBytes / messages.length, allVerified[0] ? "" : "  VERIFICATION FAILED"));
+        }
+    }
+}
@@ -0,0 +1,341 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Signs messages in batches: one signature over the Merkle root of a batch instead of one per
+ * message.
+ *
+ * Messages are collected until the batch is full or its time window has passed, whichever comes
+ * first. The batch is built into a tree, only the root is signed, and every message gets a
+ * Receipt: its leaf index, the sibling digests up to the root, the root and the root's signature.
+ * A Verifier checks the signature once per root it sees and after that only the proof, which
+ * costs log2(batch size) hashes, so signing and verifying both cost one private- or public-key
+ * operation per batch rather than per message.
+ *
+ * The trees use MerkleEngine.Mode.RAW, since receipts carry raw digests and never need the
+ * hex-compatible roots. RAW hashes leaves and inner nodes the same way, so a 64-byte message equal
+ * to two child digests would hash to their parent. To rule that out, the signature covers the
+ * root together with the batch's leaf count, and the verifier only accepts a proof with exactly
+ * as many steps as a tree of that many leaves has, for a leaf index inside it. A proof that
+ * starts from an inner node is always too short.
+ */
+public class SignedMerkleBatcher implements AutoCloseable {
+
+    private static final int HASH_LENGTH = MerkleEngine.HASH_LENGTH;
+    private static final MerkleEngine.Mode MODE = MerkleEngine.Mode.RAW;
+
+    /**
+     * What a message's sender hands on with it: enough to prove the message was in a signed batch.
+     */
+    public static class Receipt {
+        public final String message;
+        public final long leafIndex;
+        public final byte[] siblings;   // packed, see FlatMerkleTree.proofDigests
+        public final byte[] root;
+        public final long leafCount;    // leaves in the batch, signed along with the root
+        public final byte[] rootSignature;
+
+        Receipt(String message, long leafIndex, byte[] siblings, byte[] root, long leafCount, byte[] rootSignature) {
+            this.message = message;
+            this.leafIndex = leafIndex;
+            this.siblings = siblings;
+            this.root = root;
+            this.leafCount = leafCount;
+            this.rootSignature = rootSignature;
+        }
+    }
+
+    private final String signatureAlgorithm;
+    private final ThreadLocal<Signature> signers;
+    private final int maxBatch;
+    private final long windowMillis;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "merkle-batch-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private List<String> pending = new ArrayList<>();
+    private List<CompletableFuture<Receipt>> waiting = new ArrayList<>();
+    private long batchNumber;
+    private long batchesSigned;
+
+    /**
+     * @param scheme       The scheme the key pair belongs to.
+     * @param privateKey   The key every batch root is signed with.
+     * @param maxBatch     A batch is signed as soon as it holds this many messages.
+     * @param windowMillis ...or this long after its first message arrived.
+     */
+    public SignedMerkleBatcher(SignatureScheme scheme, PrivateKey privateKey, int maxBatch, long windowMillis) {
+        this.signatureAlgorithm = scheme.signatureAlgorithm();
+        this.signers = ThreadLocal.withInitial(() -> {
+            try {
+                return scheme.signer(privateKey);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot sign with " + signatureAlgorithm, e);
+            }
+        });
+        this.maxBatch = maxBatch;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Adds a message to the current batch.
+     * @return The message's receipt, completed when its batch has been signed.
+     */
+    public CompletableFuture<Receipt> submit(String message) {
+        CompletableFuture<Receipt> receipt = new CompletableFuture<>();
+        List<String> full = null;
+        List<CompletableFuture<Receipt>> fullWaiting = null;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                long batch = batchNumber;
+                timer.schedule(() -> flush(batch), windowMillis, TimeUnit.MILLISECONDS);
+            }
+            pending.add(message);
+            waiting.add(receipt);
+            if (pending.size() >= maxBatch) {
+                full = pending;
+                fullWaiting = waiting;
+                startNextBatch();
+            }
+        }
+        // Sign outside the lock so the next batch can fill meanwhile.
+        if (full != null) {
+            sign(full, fullWaiting);
+        }
+        return receipt;
+    }
+
+    /**
+     * Signs whatever is waiting now, without waiting for the window.
+     */
+    public void flush() {
+        List<String> messages;
+        List<CompletableFuture<Receipt>> receipts;
+        synchronized (this) {
+            if (pending.isEmpty()) return;
+            messages = pending;
+            receipts = waiting;
+            startNextBatch();
+        }
+        sign(messages, receipts);
+    }
+
+    // The timer for a batch that was already signed because it filled up does nothing. The check
+    // and the hand-over happen under one lock, so a batch that fills up in between is not cut short.
+    private void flush(long batch) {
+        List<String> messages;
+        List<CompletableFuture<Receipt>> receipts;
+        synchronized (this) {
+            if (batch != batchNumber || pending.isEmpty()) return;
+            messages = pending;
+            receipts = waiting;
+            startNextBatch();
+        }
+        sign(messages, receipts);
+    }
+
+    private void startNextBatch() {
+        pending = new ArrayList<>();
+        waiting = new ArrayList<>();
+        batchNumber++;
+    }
+
+    // Builds the tree, signs its root once and hands every message its proof.
+    private void sign(List<String> messages, List<CompletableFuture<Receipt>> receipts) {
+        try {
+            FlatMerkleTree tree = FlatMerkleTree.build(messages, MODE);
+            byte[] root = tree.root();
+            Signature signer = signers.get();
+            signer.update(signedBytes(root, tree.size()));
+            byte[] rootSignature = signer.sign();
+            synchronized (this) {
+                batchesSigned++;
+            }
+            for (int i = 0; i < messages.size(); i++) {
+                receipts.get(i).complete(new Receipt(messages.get(i), i, tree.proofDigests(i), root, tree.size(), rootSignature));
+            }
+        } catch (GeneralSecurityException | RuntimeException e) {
+            for (CompletableFuture<Receipt> receipt : receipts) {
+                receipt.completeExceptionally(e);
+            }
+        }
+    }
+
+    // What is signed for a batch: the root followed by the leaf count as 8 big-endian bytes.
+    private static byte[] signedBytes(byte[] root, long leafCount) {
+        return ByteBuffer.allocate(HASH_LENGTH + 8).put(root).putLong(leafCount).array();
+    }
+
+    /**
+     * @return How many roots have been signed, i.e. how many private-key operations were needed.
+     */
+    public synchronized long batchesSigned() {
+        return batchesSigned;
+    }
+
+    /**
+     * Signs what is still waiting and stops the window timer.
+     */
+    @Override
+    public void close() {
+        flush();
+        timer.shutdownNow();
+    }
+
+    /**
+     * Checks receipts against the batcher's public key, verifying each root's signature only once.
+     * Safe to share between threads.
+     */
+    public static class Verifier {
+        private static final int MAX_REMEMBERED_ROOTS = 100_000;
+
+        private final ThreadLocal<Signature> verifiers;
+        private final ConcurrentHashMap<String, Boolean> verifiedRoots = new ConcurrentHashMap<>();
+        private final LongAdder signatureChecks = new LongAdder();
+
+        public Verifier(SignatureScheme scheme, PublicKey publicKey) {
+            this.verifiers = ThreadLocal.withInitial(() -> {
+                try {
+                    return scheme.verifier(publicKey);
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException("Cannot verify with " + scheme.signatureAlgorithm(), e);
+                }
+            });
+        }
+
+        public boolean verify(Receipt receipt) {
+            return proofLeadsToRoot(receipt) && rootIsSigned(receipt.root, receipt.leafCount, receipt.rootSignature);
+        }
+
+        // Only a (root, leaf count) pair whose signature checked out is remembered, so a forged
+        // signature on a pair that was seen before cannot matter: the pair is already known to be
+        // signed.
+        private boolean rootIsSigned(byte[] root, long leafCount, byte[] rootSignature) {
+            String key = MerkleEngine.toHex(root) + "/" + leafCount;
+            if (verifiedRoots.containsKey(key)) return true;
+            boolean signed;
+            try {
+                Signature verifier = verifiers.get();
+                verifier.update(signedBytes(root, leafCount));
+                signed = verifier.verify(rootSignature);
+            } catch (GeneralSecurityException e) {
+                // A Signature that threw (e.g. on a malformed signature) may still hold this
+                // message, which would spoil the next check on this thread; start a fresh one.
+                verifiers.remove();
+                signed = false;
+            }
+            signatureChecks.increment();
+            if (signed) {
+                if (verifiedRoots.size() >= MAX_REMEMBERED_ROOTS) verifiedRoots.clear();
+                verifiedRoots.put(key, Boolean.TRUE);
+            }
+            return signed;
+        }
+
+        // The proof must have exactly the height of a tree of leafCount leaves, so it starts at a
+        // leaf and not at an inner node dressed up as a message.
+        private static boolean proofLeadsToRoot(Receipt receipt) {
+            if (receipt.leafCount < 1 || receipt.leafIndex < 0 || receipt.leafIndex >= receipt.leafCount) {
+                return false;
+            }
+            int steps = 64 - Long.numberOfLeadingZeros(receipt.leafCount - 1);
+            if (receipt.siblings.length != steps * HASH_LENGTH) {
+                return false;
+            }
+            MerkleEngine engine = MerkleEngine.forCurrentThread(MODE);
+            byte[] node = new byte[HASH_LENGTH];
+            engine.hashLeaf(receipt.message, node, 0);
+            for (int level = 0; level < steps; level++) {
+                if ((receipt.leafIndex >>> level & 1) != 0) {
+                    engine.hashPair(receipt.siblings, level * HASH_LENGTH, node, 0, node, 0);
+                } else {
+                    engine.hashPair(node, 0, receipt.siblings, level * HASH_LENGTH, node, 0);
+                }
+            }
+            return Arrays.equals(node, receipt.root);
+        }
+
+        /**
+         * @return How many signatures were actually checked.
+         */
+        public long signatureChecks() {
+            return signatureChecks.sum();
+        }
+    }
+
+    /**
+     * Compares signing every message with signing batch roots.
+     * java SignedMerkleBatcher [messages] [batch size] [window millis] [scheme]
+     */
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        long window = args.length > 2 ? Long.parseLong(args[2]) : 50;
+        SignatureScheme scheme = args.length > 3 ? SignatureScheme.fromLabel(args[3]) : SignatureScheme.RSA_2048;
+
+        KeyPair keyPair = scheme.generateKeyPair();
+        List<String> messages = new ArrayList<>();
+        Iterator<String> generated = SignaturePipeline.syntheticMessages(count);
+        while (generated.hasNext()) {
+            messages.add(generated.next());
+        }
+
+        // 1. One signature per message, as DigitalSignatureDemo does, timed on a sample.
+        int sample = Math.min(count, 1000);
+        Signature signature = scheme.signer(keyPair);
+        long start = System.nanoTime();
+        for (int i = 0; i < sample; i++) {
+            signature.update(messages.get(i).getBytes(StandardCharsets.UTF_8));
+            signature.sign();
+        }
+        double perMessageRate = sample * 1e9 / (System.nanoTime() - start);
+
+        // 2. One signature per batch root.
+        List<CompletableFuture<Receipt>> futures = new ArrayList<>(count);
+        long batches;
+        start = System.nanoTime();
+        try (SignedMerkleBatcher batcher = new SignedMerkleBatcher(scheme, keyPair.getPrivate(), batchSize, window)) {
+            for (String message : messages) {
+                futures.add(batcher.submit(message));
+            }
+            batcher.flush();
+            for (CompletableFuture<Receipt> future : futures) {
+                future.join();
+            }
+            batches = batcher.batchesSigned();
+        }
+        double batchedRate = count * 1e9 / (System.nanoTime() - start);
+
+        // 3. Verify every receipt: one signature check per batch, then a proof.
+        Verifier verifier = new Verifier(scheme, keyPair.getPublic());
+        start = System.nanoTime();
+        long valid = futures.parallelStream().map(CompletableFuture::join).filter(verifier::verify).count();
+        double verifyRate = count * 1e9 / (System.nanoTime() - start);
+
+        System.out.println("--- " + count + " messages, " + scheme.label() + ", batches of up to " + batchSize
+                + " or " + window + " ms ---");
+        System.out.println("Sign each message:  " + String.format("%.0f", perMessageRate) + " messages/s, "
+                + count + " private-key operations");
+        System.out.println("Sign batch roots:   " + String.format("%.0f", batchedRate) + " messages/s, "
+                + batches + " private-key operations");
+        System.out.println("Verify receipts:    " + valid + "/" + count + " valid, " + String.format("%.0f", verifyRate)
+                + " messages/s, " + verifier.signatureChecks() + " signature checks");
+    }
+}
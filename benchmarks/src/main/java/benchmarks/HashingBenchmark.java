@@ -0,0 +1,71 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The getSHA256Hash helper (String in, hex String out, a new MessageDigest per call) against
+ * hashing raw bytes with a reused digest.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class HashingBenchmark {
+
+    private static final MethodHandle GET_SHA256_HASH =
+            Targets.staticMethod("HashFunctionDemo", "getSHA256Hash", String.class, String.class);
+
+    @Param({ "16", "1024", "65536" })
+    public int size;
+
+    private String input;
+    private byte[] bytes;
+    private MessageDigest digest;
+    private final byte[] out = new byte[32];
+
+    @Setup
+    public void setUp() throws NoSuchAlgorithmException {
+        char[] chars = new char[size];
+        Arrays.fill(chars, 'a');
+        input = new String(chars);
+        bytes = input.getBytes(StandardCharsets.UTF_8);
+        digest = MessageDigest.getInstance("SHA-256");
+    }
+
+    @Benchmark
+    public String stringToHex() throws Throwable {
+        return (String) GET_SHA256_HASH.invokeExact(input);
+    }
+
+    @Benchmark
+    public byte[] rawBytes() {
+        return digest.digest(bytes);
+    }
+
+    @Benchmark
+    public byte[] rawBytesNoAllocation() throws DigestException {
+        digest.update(bytes);
+        digest.digest(out, 0, out.length);
+        return out;
+    }
+}
@@ -0,0 +1,79 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building roots and generating and verifying proofs with MerkleTree and MerkleTreeConstructor,
+ * from 1K to 10M transactions. The 10M case needs the larger heap set on the fork.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms6g", "-Xmx6g" })
+@State(Scope.Benchmark)
+public class MerkleBenchmark {
+
+    private static final MethodHandle BUILD_MERKLE_ROOT =
+            Targets.staticMethod("MerkleTree", "buildMerkleRoot", String.class, List.class);
+    private static final MethodHandle GENERATE_MERKLE_PROOF =
+            Targets.staticMethod("MerkleTree", "generateMerkleProof", List.class, List.class, String.class);
+    private static final MethodHandle VERIFY_MERKLE_PROOF =
+            Targets.staticMethod("MerkleTree", "verifyMerkleProof", boolean.class, String.class, List.class, String.class);
+    private static final MethodHandle CONSTRUCTOR_BUILD_MERKLE_ROOT =
+            Targets.staticMethod("MerkleTreeConstructor", "buildMerkleRoot", String.class, List.class);
+
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    public int leaves;
+
+    private List<String> transactions;
+    private String item;
+    private List<?> proof;
+    private String root;
+
+    @Setup
+    public void setUp() throws Throwable {
+        transactions = new ArrayList<>(leaves);
+        for (int i = 0; i < leaves; i++) {
+            transactions.add("Tx" + i);
+        }
+        item = transactions.get(leaves / 2);
+        root = (String) BUILD_MERKLE_ROOT.invokeExact((List<?>) transactions);
+        proof = (List<?>) GENERATE_MERKLE_PROOF.invokeExact((List<?>) transactions, item);
+    }
+
+    @Benchmark
+    public String buildMerkleRoot() throws Throwable {
+        return (String) BUILD_MERKLE_ROOT.invokeExact((List<?>) transactions);
+    }
+
+    @Benchmark
+    public String constructorBuildMerkleRoot() throws Throwable {
+        return (String) CONSTRUCTOR_BUILD_MERKLE_ROOT.invokeExact((List<?>) transactions);
+    }
+
+    @Benchmark
+    public List<?> generateMerkleProof() throws Throwable {
+        return (List<?>) GENERATE_MERKLE_PROOF.invokeExact((List<?>) transactions, item);
+    }
+
+    @Benchmark
+    public boolean verifyMerkleProof() throws Throwable {
+        return (boolean) VERIFY_MERKLE_PROOF.invokeExact(item, proof, root);
+    }
+}
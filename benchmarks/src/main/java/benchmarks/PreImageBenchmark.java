@@ -0,0 +1,81 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One pre-image attempt: the original generateSystematicString + getSHA256Hash path against the
+ * odometer candidates and in-place digest the parallel search uses.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class PreImageBenchmark {
+
+    private static final MethodHandle GENERATE_SYSTEMATIC_STRING =
+            Targets.staticMethod("PreImageAttackDemo", "generateSystematicString", String.class, long.class);
+    private static final MethodHandle GET_SHA256_HASH =
+            Targets.staticMethod("PreImageAttackDemo", "getSHA256Hash", String.class, String.class);
+    private static final MethodHandle SET_CANDIDATE =
+            Targets.staticMethod("PreImageAttackDemo", "setCandidate", int.class, long.class, byte[].class, byte[].class);
+    private static final MethodHandle NEXT_CANDIDATE =
+            Targets.staticMethod("PreImageAttackDemo", "nextCandidate", int.class, byte[].class, byte[].class, int.class);
+
+    // Start well into the keyspace so candidates have a realistic length.
+    private static final long FIRST_INDEX = 1_000_000_000L;
+
+    private long index;
+    private final byte[] digits = new byte[16];
+    private final byte[] candidate = new byte[16];
+    private int length;
+    private MessageDigest digest;
+    private final byte[] hash = new byte[32];
+
+    @Setup
+    public void setUp() throws Throwable {
+        index = FIRST_INDEX;
+        length = (int) SET_CANDIDATE.invokeExact(FIRST_INDEX, digits, candidate);
+        digest = MessageDigest.getInstance("SHA-256");
+    }
+
+    @Benchmark
+    public String generateSystematicString() throws Throwable {
+        return (String) GENERATE_SYSTEMATIC_STRING.invokeExact(index++);
+    }
+
+    @Benchmark
+    public int nextCandidate() throws Throwable {
+        length = (int) NEXT_CANDIDATE.invokeExact(digits, candidate, length);
+        return length;
+    }
+
+    @Benchmark
+    public String attemptWithStrings() throws Throwable {
+        return (String) GET_SHA256_HASH.invokeExact((String) GENERATE_SYSTEMATIC_STRING.invokeExact(index++));
+    }
+
+    @Benchmark
+    public byte[] attemptWithBytes() throws Throwable {
+        length = (int) NEXT_CANDIDATE.invokeExact(digits, candidate, length);
+        digest.update(candidate, 0, length);
+        digest.digest(hash, 0, hash.length);
+        return hash;
+    }
+}
@@ -0,0 +1,85 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Signing and verifying one message per scheme. signFresh repeats DigitalSignatureDemo's steps
+ * (getInstance and initSign for every message); sign and verify reuse an initialised Signature.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SignatureBenchmark {
+
+    private static final MethodHandle FROM_LABEL =
+            Targets.staticMethod("SignatureScheme", "fromLabel", Targets.type("SignatureScheme"), String.class);
+    private static final MethodHandle GENERATE_KEY_PAIR =
+            Targets.virtualMethod("SignatureScheme", "generateKeyPair", KeyPair.class);
+    private static final MethodHandle SIGNATURE_ALGORITHM =
+            Targets.virtualMethod("SignatureScheme", "signatureAlgorithm", String.class);
+
+    @Param({ "rsa-2048", "rsa-3072", "rsa-4096", "ecdsa-p256", "ed25519" })
+    public String scheme;
+
+    private String algorithm;
+    private KeyPair keyPair;
+    private byte[] message;
+    private byte[] signature;
+    private Signature signer;
+    private Signature verifier;
+
+    @Setup
+    public void setUp() throws Throwable {
+        Object signatureScheme = FROM_LABEL.invoke(scheme);
+        algorithm = (String) SIGNATURE_ALGORITHM.invoke(signatureScheme);
+        keyPair = (KeyPair) GENERATE_KEY_PAIR.invoke(signatureScheme);
+        message = "Transfer 42: account-1 -> account-2".getBytes(StandardCharsets.UTF_8);
+
+        signer = Signature.getInstance(algorithm);
+        signer.initSign(keyPair.getPrivate());
+        verifier = Signature.getInstance(algorithm);
+        verifier.initVerify(keyPair.getPublic());
+        signer.update(message);
+        signature = signer.sign();
+    }
+
+    @Benchmark
+    public byte[] signFresh() throws Exception {
+        Signature fresh = Signature.getInstance(algorithm);
+        fresh.initSign(keyPair.getPrivate());
+        fresh.update(message);
+        return fresh.sign();
+    }
+
+    @Benchmark
+    public byte[] sign() throws SignatureException {
+        signer.update(message);
+        return signer.sign();
+    }
+
+    @Benchmark
+    public boolean verify() throws SignatureException {
+        verifier.update(message);
+        return verifier.verify(signature);
+    }
+}
@@ -0,0 +1,54 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * The code under test lives in the default package, which a named package cannot import, so the
+ * benchmarks reach it through method handles. A handle kept in a static final field is a constant
+ * to the JIT, and invokeExact on it compiles to a direct call, so this adds no measurable cost.
+ */
+final class Targets {
+
+    private Targets() {
+    }
+
+    /**
+     * A default-package class, for method types that mention it.
+     */
+    static Class<?> type(String className) {
+        try {
+            return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Cannot find " + className, e);
+        }
+    }
+
+    /**
+     * A static method of a default-package class, private or not.
+     */
+    static MethodHandle staticMethod(String className, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            Class<?> owner = Class.forName(className);
+            return MethodHandles.privateLookupIn(owner, MethodHandles.lookup())
+                    .findStatic(owner, name, MethodType.methodType(returnType, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find " + className + "." + name, e);
+        }
+    }
+
+    /**
+     * An instance method, with the receiver typed as Object.
+     */
+    static MethodHandle virtualMethod(String className, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            Class<?> owner = Class.forName(className);
+            MethodHandle handle = MethodHandles.privateLookupIn(owner, MethodHandles.lookup())
+                    .findVirtual(owner, name, MethodType.methodType(returnType, parameters));
+            return handle.asType(handle.type().changeParameterType(0, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find " + className + "." + name, e);
+        }
+    }
+}
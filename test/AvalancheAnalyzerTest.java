@@ -0,0 +1,78 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class AvalancheAnalyzerTest {
+
+    @Test
+    void rejectsArgumentsThatHashNothing() {
+        assertThrows(IllegalArgumentException.class, () -> AvalancheAnalyzer.analyze(0, 1000, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> AvalancheAnalyzer.analyze(-1, 1000, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> AvalancheAnalyzer.analyze(4, 0, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> AvalancheAnalyzer.analyze(4, -5, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> AvalancheAnalyzer.analyze(4, 1000, 0, 1));
+    }
+
+    @Test
+    void capsTheInputLengthAndTheCounterMemory() throws Exception {
+        int max = AvalancheAnalyzer.MAX_INPUT_LENGTH;
+        assertThrows(IllegalArgumentException.class, () -> AvalancheAnalyzer.analyze(max + 1, 1, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> AvalancheAnalyzer.analyze(Integer.MAX_VALUE, 1, 1, 1));
+        // The longest input still fits in an int-indexed matrix.
+        assertEquals((long) max * 8 * 256, new AvalancheAnalyzer.Result(max * 8).sac.length);
+        // Too many threads for the heap are refused before any matrix is allocated.
+        assertThrows(IllegalArgumentException.class, () -> AvalancheAnalyzer.analyze(max, 1, 1_000_000, 1));
+
+        AvalancheAnalyzer.Result result = AvalancheAnalyzer.analyze(512, 1, 1, 1);
+        assertEquals(512 * 8, result.pairs);
+    }
+
+    @Test
+    void reportOfAnEmptyResultDoesNotThrow() {
+        AvalancheAnalyzer.printReport(new AvalancheAnalyzer.Result(8));
+    }
+
+    @Test
+    void roundsUpToWholeSamples() throws Exception {
+        AvalancheAnalyzer.Result result = AvalancheAnalyzer.analyze(3, 1, 1, 1);
+        assertEquals(24, result.pairs);
+        assertEquals(24, sum(result.distanceHistogram));
+    }
+
+    @Test
+    void totalsDoNotDependOnTheThreadCount() throws Exception {
+        AvalancheAnalyzer.Result one = AvalancheAnalyzer.analyze(5, 20_000, 1, 9);
+        AvalancheAnalyzer.Result four = AvalancheAnalyzer.analyze(5, 20_000, 4, 9);
+        assertEquals(one.pairs, four.pairs);
+        assertArrayEquals(one.distanceHistogram, four.distanceHistogram);
+        assertArrayEquals(one.outputBitFlips, four.outputBitFlips);
+        assertArrayEquals(one.sac, four.sac);
+    }
+
+    @Test
+    void aboutHalfTheOutputBitsFlip() throws Exception {
+        AvalancheAnalyzer.Result result = AvalancheAnalyzer.analyze(16, 50_000, 2, 3);
+        assertEquals(128, result.meanDistance(), 0.5);
+        assertEquals(8, result.distanceStdDev(), 0.5);
+    }
+
+    @Test
+    void bitDistanceCountsDifferingBits() {
+        assertEquals(0, AvalancheAnalyzer.bitDistance(new byte[12], new byte[12]));
+        byte[] ones = new byte[12];
+        Arrays.fill(ones, (byte) 0xff);
+        assertEquals(96, AvalancheAnalyzer.bitDistance(new byte[12], ones));
+        assertEquals(1, AvalancheAnalyzer.bitDistance(new byte[] { 0, 0, 0, 0, 0, 0, 0, 0, 1 }, new byte[9]));
+        assertEquals(16, AvalancheAnalyzer.bitDistance(new byte[3], new byte[1]));
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long value : values) total += value;
+        return total;
+    }
+}
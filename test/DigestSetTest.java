@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DigestSetTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void findsEveryAddedDigestAndNothingElse() {
+        for (boolean bloom : new boolean[] { false, true }) {
+            DigestSet set = new DigestSet(1000, 32, bloom);
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, set.add(PreImageAttackDemoTest.digestOf(i)));
+            }
+            assertEquals(1000, set.size());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, set.indexOf(PreImageAttackDemoTest.digestOf(i), 0));
+                assertArrayEquals(PreImageAttackDemoTest.digestOf(i), set.get(i));
+            }
+            // With the Bloom filter on, almost all of these are turned away before the table.
+            for (int i = 1000; i < 20_000; i++) {
+                assertEquals(-1, set.indexOf(PreImageAttackDemoTest.digestOf(i), 0));
+            }
+        }
+    }
+
+    @Test
+    void duplicateKeepsItsFirstEntry() {
+        DigestSet set = new DigestSet(2, 32, true);
+        assertEquals(0, set.add(PreImageAttackDemoTest.digestOf(7)));
+        assertEquals(1, set.add(PreImageAttackDemoTest.digestOf(8)));
+        assertEquals(0, set.add(PreImageAttackDemoTest.digestOf(7)));
+        assertEquals(2, set.size());
+        assertThrows(IllegalStateException.class, () -> set.add(PreImageAttackDemoTest.digestOf(9)));
+    }
+
+    @Test
+    void samePrefixIsSettledByTheFullDigest() {
+        DigestSet set = new DigestSet(4, 32, false);
+        byte[] a = PreImageAttackDemoTest.digestOf(1);
+        byte[] b = a.clone();
+        b[31] ^= 1;
+        set.add(a);
+        assertEquals(-1, set.indexOf(b, 0));
+        assertEquals(1, set.add(b));
+        assertEquals(1, set.indexOf(b, 0));
+    }
+
+    @Test
+    void looksUpAtAnOffset() {
+        DigestSet set = new DigestSet(1, 32, true);
+        set.add(PreImageAttackDemoTest.digestOf(3));
+        byte[] buffer = new byte[40];
+        System.arraycopy(PreImageAttackDemoTest.digestOf(3), 0, buffer, 5, 32);
+        assertEquals(0, set.indexOf(buffer, 5));
+    }
+
+    @Test
+    void loadSkipsCommentsBlankLinesAndDuplicates() throws IOException {
+        HexFormat hex = HexFormat.of();
+        Path file = dir.resolve("targets.txt");
+        Files.write(file, List.of(
+                "# targets for the test",
+                hex.formatHex(PreImageAttackDemoTest.digestOf(10)),
+                "",
+                "   " + hex.formatHex(PreImageAttackDemoTest.digestOf(20)).toUpperCase() + "  ",
+                hex.formatHex(PreImageAttackDemoTest.digestOf(10))));
+        DigestSet set = DigestSet.load(file, 32, true);
+        assertEquals(2, set.size());
+        assertEquals(0, set.indexOf(PreImageAttackDemoTest.digestOf(10), 0));
+        assertEquals(1, set.indexOf(PreImageAttackDemoTest.digestOf(20), 0));
+        assertEquals(-1, set.indexOf(PreImageAttackDemoTest.digestOf(30), 0));
+    }
+
+    @Test
+    void loadRejectsADigestOfTheWrongLength() throws IOException {
+        Path file = dir.resolve("short.txt");
+        Files.write(file, List.of("00112233445566778899aabbccddeeff"));
+        assertThrows(IOException.class, () -> DigestSet.load(file, 32, false));
+    }
+}
@@ -0,0 +1,130 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class FlatMerkleTreeTest {
+
+    static List<String> items(int count) {
+        List<String> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add("Tx" + i);
+        }
+        return items;
+    }
+
+    @Test
+    void rootMatchesEngineForEverySize() {
+        for (MerkleEngine.Mode mode : MerkleEngine.Mode.values()) {
+            for (int n = 1; n <= 70; n++) {
+                List<String> items = items(n);
+                assertArrayEquals(new MerkleEngine(mode).root(items), FlatMerkleTree.build(items, mode).root(), mode + " n=" + n);
+            }
+        }
+    }
+
+    @Test
+    void everyProofVerifiesAgainstTheRoot() {
+        for (int n = 1; n <= 40; n++) {
+            List<String> items = items(n);
+            FlatMerkleTree tree = FlatMerkleTree.build(items, MerkleEngine.Mode.HEX_COMPAT);
+            String root = MerkleTree.buildMerkleRoot(items);
+            for (String item : items) {
+                assertTrue(MerkleTree.verifyMerkleProof(item, tree.proofFor(item), root), item + " of " + n);
+            }
+            assertFalse(MerkleTree.verifyMerkleProof("FakeTx", tree.proofFor(0), root));
+        }
+    }
+
+    @Test
+    void proofDigestsMatchProofNodes() {
+        FlatMerkleTree tree = FlatMerkleTree.build(items(13), MerkleEngine.Mode.RAW);
+        for (int i = 0; i < tree.size(); i++) {
+            List<MerkleTree.ProofNode> proof = tree.proofFor(i);
+            byte[] digests = tree.proofDigests(i);
+            assertEquals(proof.size() * MerkleEngine.HASH_LENGTH, digests.length);
+            for (int level = 0; level < proof.size(); level++) {
+                byte[] sibling = new byte[MerkleEngine.HASH_LENGTH];
+                MerkleEngine.fromHex(proof.get(level).hash, sibling, 0);
+                assertArrayEquals(sibling, MerkleEngine.node(digests, level));
+            }
+        }
+    }
+
+    @Test
+    void indexOfFindsTheFirstLeaf() {
+        List<String> items = items(20);
+        items.set(15, "Tx3");
+        FlatMerkleTree tree = FlatMerkleTree.build(items, MerkleEngine.Mode.RAW);
+        assertEquals(3, tree.indexOf("Tx3"));
+        assertEquals(19, tree.indexOf("Tx19"));
+        assertEquals(-1, tree.indexOf("Tx15"));
+        assertNull(tree.proofFor("missing"));
+    }
+
+    @Test
+    void rejectsEmptyInputAndBadIndexes() {
+        assertNull(FlatMerkleTree.build(new ArrayList<>(), MerkleEngine.Mode.RAW));
+        FlatMerkleTree tree = FlatMerkleTree.build(items(5), MerkleEngine.Mode.RAW);
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.proofFor(5));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.proofDigests(-1));
+    }
+
+    @Test
+    void appendMatchesAFullRebuildAtEverySize() {
+        for (MerkleEngine.Mode mode : MerkleEngine.Mode.values()) {
+            FlatMerkleTree tree = new FlatMerkleTree(mode);
+            assertNull(tree.root());
+            List<String> items = new ArrayList<>();
+            for (int n = 1; n <= 300; n++) {
+                items.add("Tx" + n);
+                assertEquals(n - 1, tree.append("Tx" + n));
+                assertArrayEquals(new MerkleEngine(mode).root(items), tree.root(), mode + " n=" + n);
+            }
+            for (int i = 0; i < items.size(); i += 17) {
+                assertEquals(i, tree.indexOf(items.get(i)));
+            }
+        }
+    }
+
+    @Test
+    void updateMatchesAFullRebuild() {
+        Random random = new Random(7);
+        for (int n : new int[] { 1, 2, 3, 31, 64, 257 }) {
+            List<String> items = items(n);
+            FlatMerkleTree tree = FlatMerkleTree.build(items, MerkleEngine.Mode.HEX_COMPAT);
+            for (int round = 0; round < 50; round++) {
+                int index = random.nextInt(n);
+                // Some updates reuse an existing item, so the leaf index must cope with duplicates.
+                String item = random.nextBoolean() ? "New" + round : items.get(random.nextInt(n));
+                items.set(index, item);
+                tree.update(index, item);
+                assertArrayEquals(new MerkleEngine(MerkleEngine.Mode.HEX_COMPAT).root(items), tree.root(), "n=" + n);
+                assertEquals(items.indexOf(item), tree.indexOf(item));
+            }
+            for (int i = 0; i < n; i++) {
+                assertTrue(MerkleTree.verifyMerkleProof(items.get(i), tree.proofFor(i), tree.rootHex()));
+            }
+        }
+    }
+
+    @Test
+    void appendAfterUpdateKeepsProofsValid() {
+        FlatMerkleTree tree = FlatMerkleTree.build(items(9), MerkleEngine.Mode.HEX_COMPAT);
+        tree.update(8, "Changed");
+        tree.append("Tx9");
+        tree.append("Tx10");
+        List<String> items = items(11);
+        items.set(8, "Changed");
+        assertEquals(MerkleTree.buildMerkleRoot(items), tree.rootHex());
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.update(11, "x"));
+    }
+}
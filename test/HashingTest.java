@@ -0,0 +1,131 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HashingTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void matchesKnownDigests() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                Hashing.hex(Hashing.Algorithm.SHA_256, "abc"));
+        assertEquals("53048e2681941ef99b2e29b76b4c7dabe4c2d0c634fc6d46e0e2f13107e7af23",
+                Hashing.hex(Hashing.Algorithm.SHA_512_256, "abc"));
+        assertEquals("3a985da74fe225b2045c172d6bd390bd855f086e3e9d525b46bfe24511431532",
+                Hashing.hex(Hashing.Algorithm.SHA3_256, "abc"));
+    }
+
+    @Test
+    void newDigestGivesEachCallerItsOwnCopy() throws Exception {
+        for (Hashing.Algorithm algorithm : Hashing.Algorithm.values()) {
+            MessageDigest first = algorithm.newDigest();
+            MessageDigest second = algorithm.newDigest();
+            assertNotSame(first, second);
+            first.update((byte) 1);
+            byte[] data = "abc".getBytes(StandardCharsets.UTF_8);
+            assertArrayEquals(MessageDigest.getInstance(algorithm.jcaName()).digest(data), second.digest(data));
+            assertEquals(Hashing.HASH_LENGTH, second.getDigestLength());
+        }
+    }
+
+    @Test
+    void pooledDigestIsResetBetweenUses() {
+        MessageDigest digest = Hashing.digest(Hashing.Algorithm.SHA_256);
+        digest.update((byte) 7);
+        assertSame(digest, Hashing.digest(Hashing.Algorithm.SHA_256));
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                Hashing.hex(Hashing.Algorithm.SHA_256, "abc"));
+    }
+
+    @Test
+    void findsAlgorithmsByLabelOrJcaName() {
+        assertSame(Hashing.Algorithm.SHA3_256, Hashing.Algorithm.fromLabel("sha3-256"));
+        assertSame(Hashing.Algorithm.SHA_512_256, Hashing.Algorithm.fromLabel("SHA-512/256"));
+        assertThrows(IllegalArgumentException.class, () -> Hashing.Algorithm.fromLabel("md5"));
+    }
+
+    @Test
+    void hashFileMatchesHashingTheBytes() throws Exception {
+        byte[] data = new byte[10_000];
+        new Random(5).nextBytes(data);
+        Path empty = Files.write(dir.resolve("empty"), new byte[0]);
+        Path file = Files.write(dir.resolve("data"), data);
+        for (Hashing.Algorithm algorithm : Hashing.Algorithm.values()) {
+            assertArrayEquals(Hashing.hash(algorithm, new byte[0]), Hashing.hashFile(algorithm, empty));
+            byte[] expected = Hashing.hash(algorithm, data);
+            assertArrayEquals(expected, Hashing.hashFile(algorithm, file));
+            // Windows smaller than the file: one byte, uneven, exactly dividing, one short of it.
+            for (long window : new long[] { 1, 4096, 2_500, 9_999 }) {
+                assertArrayEquals(expected, Hashing.hashFile(algorithm, file, window), algorithm + ", window " + window);
+            }
+        }
+    }
+
+    @Test
+    void hashesTheRemainingBytesOfAnyBuffer() {
+        byte[] data = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+        byte[] expected = Hashing.hash(Hashing.Algorithm.SHA_256, Arrays.copyOfRange(data, 4, 19));
+
+        ByteBuffer heap = ByteBuffer.wrap(data);
+        heap.position(4).limit(19);
+        assertArrayEquals(expected, Hashing.hash(Hashing.Algorithm.SHA_256, heap));
+        assertEquals(19, heap.position());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).position(4).limit(19);
+        assertArrayEquals(expected, Hashing.hash(Hashing.Algorithm.SHA_256, direct));
+        assertEquals(19, direct.position());
+
+        // A slice starts at its own position 0 somewhere inside the buffer.
+        direct.position(4);
+        assertArrayEquals(expected, Hashing.hash(Hashing.Algorithm.SHA_256, direct.slice()));
+    }
+
+    @Test
+    void hashesARangeIntoAnOffsetOfOut() {
+        byte[] data = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        for (Hashing.Algorithm algorithm : Hashing.Algorithm.values()) {
+            byte[] out = new byte[50];
+            Arrays.fill(out, (byte) 0x55);
+            Hashing.hash(algorithm, data, 3, 9, out, 10);
+            assertArrayEquals(Hashing.hash(algorithm, Arrays.copyOfRange(data, 3, 12)), Arrays.copyOfRange(out, 10, 42));
+            for (int i : new int[] { 0, 9, 42, 49 }) {
+                assertEquals(0x55, out[i], "byte " + i + " outside the digest");
+            }
+            assertThrows(IllegalArgumentException.class, () -> Hashing.hash(algorithm, data, 0, 16, new byte[31], 0));
+            assertThrows(IllegalArgumentException.class, () -> Hashing.hash(algorithm, data, 0, 16, new byte[40], 9));
+            // The failed call must not leave bytes behind in this thread's digest.
+            assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                    Hashing.hex(Hashing.Algorithm.SHA_256, "abc"));
+        }
+    }
+
+    @Test
+    void writesHexBetweenOffsets() {
+        byte[] data = { 0x00, 0x0f, (byte) 0xa5, (byte) 0xff, 0x10 };
+        byte[] out = new byte[12];
+        Arrays.fill(out, (byte) '.');
+        Hashing.writeHex(data, 1, 3, out, 2);
+        assertEquals("..0fa5ff....", new String(out, StandardCharsets.US_ASCII));
+        Hashing.writeHex(data, 0, 0, out, 12);
+        assertEquals("000fa5ff10", Hashing.toHex(data));
+        assertEquals("", Hashing.toHex(new byte[0]));
+        assertNull(Hashing.toHex(null));
+    }
+}
@@ -0,0 +1,98 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class MerkleBatchVerifierTest {
+
+    @Test
+    void batchMatchesOneAtATimeAndUsesTheCache() {
+        List<String> transactions = FlatMerkleTreeTest.items(1000);
+        FlatMerkleTree tree = FlatMerkleTree.build(transactions, MerkleEngine.Mode.HEX_COMPAT);
+        Random random = new Random(3);
+        List<String> items = new ArrayList<>();
+        List<List<MerkleTree.ProofNode>> proofs = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int index = random.nextInt(transactions.size());
+            // Every fifth pair is given another leaf's proof and must fail.
+            items.add(transactions.get(index));
+            proofs.add(tree.proofFor(i % 5 == 0 ? (index + 1) % transactions.size() : index));
+        }
+
+        MerkleBatchVerifier verifier = new MerkleBatchVerifier(tree.root(), MerkleEngine.Mode.HEX_COMPAT, transactions.size(), 1 << 12);
+        boolean[] expected = new boolean[items.size()];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = MerkleTree.verifyMerkleProof(items.get(i), proofs.get(i), tree.rootHex());
+        }
+        assertArrayEquals(expected, verifier.verifyAll(items, proofs));
+        assertTrue(verifier.cacheHitCount() > 0);
+    }
+
+    @Test
+    void cachedItemStillNeedsItsOwnIndexAndSiblings() {
+        List<String> transactions = FlatMerkleTreeTest.items(64);
+        FlatMerkleTree tree = FlatMerkleTree.build(transactions, MerkleEngine.Mode.RAW);
+        MerkleBatchVerifier verifier = new MerkleBatchVerifier(tree.root(), MerkleEngine.Mode.RAW, 64, 1 << 10);
+        assertTrue(verifier.verify("Tx5", 5, tree.proofDigests(5)));
+
+        byte[] garbage = new byte[tree.proofDigests(5).length];
+        assertFalse(verifier.verify("Tx5", 6, garbage));
+        assertFalse(verifier.verify("Tx5", 6, tree.proofDigests(6)));
+        assertFalse(verifier.verify("Tx5", 5, new byte[0]));
+        assertFalse(verifier.verify("Tx5", 5, new byte[garbage.length + 32]));
+        assertFalse(verifier.verify("Tx5", 5 + 64, tree.proofDigests(5)));
+        assertFalse(verifier.verify("Tx5", -1, tree.proofDigests(5)));
+
+        // The sibling path of a neighbour reaches the cached node at the right index.
+        assertTrue(verifier.verify("Tx4", 4, tree.proofDigests(4)));
+        assertTrue(verifier.cacheHitCount() > 0);
+    }
+
+    @Test
+    void wrongRootFailsEverything() {
+        List<String> transactions = FlatMerkleTreeTest.items(10);
+        FlatMerkleTree tree = FlatMerkleTree.build(transactions, MerkleEngine.Mode.RAW);
+        MerkleBatchVerifier verifier = new MerkleBatchVerifier(new byte[MerkleEngine.HASH_LENGTH], MerkleEngine.Mode.RAW, transactions.size(), 16);
+        for (int i = 0; i < transactions.size(); i++) {
+            assertFalse(verifier.verify(transactions.get(i), i, tree.proofDigests(i)));
+        }
+    }
+
+    @Test
+    void proofMustFitTheTreeEvenAfterItsPathIsCached() {
+        List<String> transactions = FlatMerkleTreeTest.items(10);
+        FlatMerkleTree tree = FlatMerkleTree.build(transactions, MerkleEngine.Mode.RAW);
+        MerkleBatchVerifier verifier = new MerkleBatchVerifier(tree.root(), MerkleEngine.Mode.RAW, 10, 1 << 10);
+        for (int i = 0; i < transactions.size(); i++) {
+            assertTrue(verifier.verify(transactions.get(i), i, tree.proofDigests(i)));
+        }
+
+        byte[] siblings = tree.proofDigests(3);
+        assertFalse(verifier.verify("Tx3", 3, Arrays.copyOf(siblings, siblings.length - 32)));
+        assertFalse(verifier.verify("Tx3", 3, Arrays.copyOf(siblings, siblings.length + 32)));
+        List<MerkleTree.ProofNode> proof = tree.proofFor(3);
+        assertFalse(verifier.verify("Tx3", proof.subList(0, proof.size() - 1)));
+
+        // Leaf 8's level-1 node is paired with itself, so index 10 hashes to the same root; there
+        // is no leaf 10 in a tree of 10.
+        assertFalse(verifier.verify("Tx8", 10, tree.proofDigests(8)));
+    }
+
+    @Test
+    void singleLeafTreeTakesOnlyEmptyProofs() {
+        FlatMerkleTree tree = FlatMerkleTree.build(FlatMerkleTreeTest.items(1), MerkleEngine.Mode.RAW);
+        MerkleBatchVerifier verifier = new MerkleBatchVerifier(tree.root(), MerkleEngine.Mode.RAW, 1, 16);
+        assertTrue(verifier.verify("Tx0", 0, new byte[0]));
+        assertTrue(verifier.verify("Tx0", List.of()));
+        assertFalse(verifier.verify("Tx0", 1, new byte[0]));
+        assertFalse(verifier.verify("Tx0", 0, new byte[32]));
+        assertThrows(IllegalArgumentException.class, () -> new MerkleBatchVerifier(tree.root(), MerkleEngine.Mode.RAW, 0, 16));
+    }
+}
@@ -0,0 +1,75 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class MerkleDiffTest {
+
+    @Test
+    void findsExactlyTheDifferingLeaves() {
+        Random random = new Random(5);
+        for (int round = 0; round < 500; round++) {
+            int sizeA = 1 + random.nextInt(100);
+            int sizeB = random.nextBoolean() ? sizeA : 1 + random.nextInt(100);
+            List<String> a = FlatMerkleTreeTest.items(sizeA);
+            List<String> b = FlatMerkleTreeTest.items(sizeB);
+            for (int edits = random.nextInt(4); edits > 0; edits--) {
+                int index = random.nextInt(sizeB);
+                b.set(index, "Edited" + index);
+            }
+            FlatMerkleTree treeA = FlatMerkleTree.build(a, MerkleEngine.Mode.RAW);
+            FlatMerkleTree treeB = FlatMerkleTree.build(b, MerkleEngine.Mode.RAW);
+
+            // Brute force: every position one side lacks or where the items differ.
+            int[] expected = IntStream.range(0, Math.max(sizeA, sizeB))
+                    .filter(i -> i >= sizeA || i >= sizeB || !a.get(i).equals(b.get(i)))
+                    .toArray();
+            assertArrayEquals(expected, MerkleDiff.compare(treeA, treeB).leaves(), sizeA + " vs " + sizeB);
+            assertArrayEquals(expected, treeB.diff(treeA));
+        }
+    }
+
+    @Test
+    void identicalTreesCompareOnlyTheRoot() {
+        List<String> items = FlatMerkleTreeTest.items(1000);
+        MerkleDiff diff = MerkleDiff.compare(FlatMerkleTree.build(items, MerkleEngine.Mode.HEX_COMPAT),
+                FlatMerkleTree.build(items, MerkleEngine.Mode.HEX_COMPAT));
+        assertEquals(0, diff.leaves().length);
+        assertEquals(1, diff.nodesCompared());
+        assertEquals(1, diff.rounds());
+    }
+
+    @Test
+    void oneChangeComparesAFewNodesPerLevel() {
+        List<String> items = FlatMerkleTreeTest.items(1 << 12);
+        FlatMerkleTree a = FlatMerkleTree.build(items, MerkleEngine.Mode.RAW);
+        FlatMerkleTree b = FlatMerkleTree.build(items, MerkleEngine.Mode.RAW);
+        b.update(1234, "Edited");
+        MerkleDiff diff = MerkleDiff.compare(a, b);
+        assertArrayEquals(new int[] { 1234 }, diff.leaves());
+        assertTrue(diff.nodesCompared() <= 2 * a.levelCount());
+        assertEquals(diff.nodesCompared() * MerkleEngine.HASH_LENGTH, diff.bytesExchanged());
+    }
+
+    @Test
+    void treesOfDifferentModesCannotBeCompared() {
+        List<String> items = FlatMerkleTreeTest.items(4);
+        assertThrows(IllegalArgumentException.class, () -> MerkleDiff.compare(FlatMerkleTree.build(items, MerkleEngine.Mode.RAW),
+                FlatMerkleTree.build(items, MerkleEngine.Mode.HEX_COMPAT)));
+    }
+
+    @Test
+    void hashesToBuildCountsEveryNode() {
+        assertEquals(1, MerkleDiff.hashesToBuild(1));
+        assertEquals(3, MerkleDiff.hashesToBuild(2));
+        // 5 leaves, then 3, 2 and 1 nodes above them.
+        assertEquals(11, MerkleDiff.hashesToBuild(5));
+        assertEquals(2 * 1024 - 1, MerkleDiff.hashesToBuild(1024));
+    }
+}
@@ -0,0 +1,72 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+class MerkleEngineTest {
+
+    // Around one and two PARALLEL_CHUNKs (4096), where the chunk split changes, plus odd counts
+    // well above it so odd nodes are duplicated on several parallel levels.
+    private static final int[] SIZES = { 1, 2, 4095, 4096, 4097, 8191, 8192, 8193, 12_289, 20_001 };
+
+    @Test
+    void parallelRootIsTheSequentialRoot() {
+        for (MerkleEngine.Mode mode : MerkleEngine.Mode.values()) {
+            for (int size : SIZES) {
+                List<String> items = FlatMerkleTreeTest.items(size);
+                byte[] expected = new MerkleEngine(mode).root(items);
+                assertArrayEquals(expected, MerkleEngine.parallelRoot(items, mode), mode + ", " + size + " items");
+            }
+        }
+    }
+
+    @Test
+    void parallelRootMatchesOnAnyPoolAndAlgorithm() {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for (Hashing.Algorithm algorithm : Hashing.Algorithm.values()) {
+                for (MerkleEngine.Mode mode : MerkleEngine.Mode.values()) {
+                    List<String> items = FlatMerkleTreeTest.items(8193);
+                    byte[] expected = new MerkleEngine(mode, algorithm).root(items);
+                    assertArrayEquals(expected, MerkleEngine.parallelRoot(items, mode, algorithm, pool), mode + ", " + algorithm);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void parallelLevelsAreTheSequentialLevels() {
+        for (MerkleEngine.Mode mode : MerkleEngine.Mode.values()) {
+            MerkleEngine engine = new MerkleEngine(mode);
+            // A LinkedList is not RandomAccess, so the leaf tasks get a copy.
+            List<String> items = new LinkedList<>(FlatMerkleTreeTest.items(16_387));
+            byte[] leaves = engine.hashLeaves(items);
+            assertArrayEquals(leaves, MerkleEngine.parallelHashLeaves(items, mode, ForkJoinPool.commonPool()));
+            for (byte[] level = leaves; level.length > MerkleEngine.HASH_LENGTH; level = engine.nextLevel(level)) {
+                assertArrayEquals(engine.nextLevel(level), MerkleEngine.parallelNextLevel(level, mode, ForkJoinPool.commonPool()));
+            }
+        }
+    }
+
+    @Test
+    void rootEntryPointsAgree() {
+        for (int size : new int[] { 4097, 8193 }) {
+            List<String> items = FlatMerkleTreeTest.items(size);
+            String expected = MerkleTree.buildMerkleRoot(items);
+            assertEquals(expected, MerkleTree.buildMerkleRootParallel(items, MerkleEngine.Mode.HEX_COMPAT));
+            assertEquals(expected, MerkleTreeConstructor.buildMerkleRoot(items));
+            assertEquals(expected, MerkleTreeConstructor.buildMerkleRootParallel(items));
+            assertEquals(MerkleTree.buildMerkleRoot(items, MerkleEngine.Mode.RAW),
+                    MerkleTree.buildMerkleRootParallel(items, MerkleEngine.Mode.RAW));
+        }
+        assertNull(MerkleEngine.parallelRoot(List.of(), MerkleEngine.Mode.RAW));
+        assertNull(MerkleTreeConstructor.buildMerkleRootParallel(null));
+    }
+}
@@ -0,0 +1,123 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class MerkleMultiproofTest {
+
+    @Test
+    void encodeDecodeRoundTripsAndVerifies() {
+        Random random = new Random(11);
+        for (MerkleEngine.Mode mode : MerkleEngine.Mode.values()) {
+            for (int n = 1; n <= 80; n++) {
+                List<String> transactions = FlatMerkleTreeTest.items(n);
+                FlatMerkleTree tree = FlatMerkleTree.build(transactions, mode);
+                for (int round = 0; round < 5; round++) {
+                    int[] wanted = random.ints(1 + random.nextInt(n), 0, n).toArray();
+                    MerkleMultiproof proof = tree.multiproof(wanted);
+                    MerkleMultiproof decoded = MerkleMultiproof.decode(proof.encode());
+
+                    assertArrayEquals(Arrays.stream(wanted).sorted().distinct().toArray(), decoded.indices());
+                    assertEquals(proof.leafCount(), decoded.leafCount());
+                    assertEquals(proof.siblingCount(), decoded.siblingCount());
+                    assertArrayEquals(proof.encode(), decoded.encode());
+                    assertTrue(decoded.verify(itemsAt(transactions, decoded.indices()), tree.root()), mode + " n=" + n);
+                }
+            }
+        }
+    }
+
+    @Test
+    void wrongItemsOrRootFail() {
+        List<String> transactions = FlatMerkleTreeTest.items(50);
+        FlatMerkleTree tree = FlatMerkleTree.build(transactions, MerkleEngine.Mode.RAW);
+        MerkleMultiproof proof = MerkleMultiproof.decode(tree.multiproof(3, 4, 30).encode());
+        List<String> items = itemsAt(transactions, proof.indices());
+        assertTrue(proof.verify(items, tree.root()));
+
+        List<String> swapped = new ArrayList<>(items);
+        swapped.set(0, "Tx5");
+        assertFalse(proof.verify(swapped, tree.root()));
+        assertFalse(proof.verify(items.subList(0, 2), tree.root()));
+        assertFalse(proof.verify(items, new byte[MerkleEngine.HASH_LENGTH]));
+    }
+
+    @Test
+    void decodeRejectsIndexesOutOfRange() {
+        // 10 leaves, 2 indexes, the second gap wraps the int index past Integer.MAX_VALUE.
+        assertThrows(IllegalArgumentException.class, () -> MerkleMultiproof.decode(wire(10, new int[] { 5, Integer.MAX_VALUE }, 0)));
+        // The last index equals the leaf count.
+        assertThrows(IllegalArgumentException.class, () -> MerkleMultiproof.decode(wire(10, new int[] { 3, 7 }, 3)));
+        assertThrows(IllegalArgumentException.class, () -> MerkleMultiproof.decode(wire(10, new int[] { 10 }, 4)));
+        // Repeated and missing indexes.
+        assertThrows(IllegalArgumentException.class, () -> MerkleMultiproof.decode(wire(10, new int[] { 3, 0 }, 4)));
+        assertThrows(IllegalArgumentException.class, () -> MerkleMultiproof.decode(wire(10, new int[0], 0)));
+    }
+
+    @Test
+    void decodeRejectsSiblingCountsThatDoNotMatch() {
+        FlatMerkleTree tree = FlatMerkleTree.build(FlatMerkleTreeTest.items(10), MerkleEngine.Mode.RAW);
+        int needed = tree.multiproof(2).siblingCount();
+        MerkleMultiproof.decode(wire(10, new int[] { 2 }, needed));
+        // Declared counts other than the one the indexes need, with data to match them.
+        assertThrows(IllegalArgumentException.class, () -> MerkleMultiproof.decode(wire(10, new int[] { 2 }, needed - 1)));
+        assertThrows(IllegalArgumentException.class, () -> MerkleMultiproof.decode(wire(10, new int[] { 2 }, needed + 1)));
+
+        byte[] good = wire(10, new int[] { 2 }, needed);
+        assertThrows(IllegalArgumentException.class, () -> MerkleMultiproof.decode(Arrays.copyOf(good, good.length - 1)));
+        assertThrows(IllegalArgumentException.class, () -> MerkleMultiproof.decode(Arrays.copyOf(good, good.length + 1)));
+    }
+
+    @Test
+    void decodeRejectsHeadersItDoesNotKnow() {
+        byte[] good = wire(10, new int[] { 2 }, 4);
+        for (int offset : new int[] { 0, 1, 2, 3 }) {
+            byte[] bad = good.clone();
+            bad[offset] = (byte) 0x7f;
+            assertThrows(IllegalArgumentException.class, () -> MerkleMultiproof.decode(bad));
+        }
+        assertThrows(IllegalArgumentException.class, () -> MerkleMultiproof.decode(new byte[0]));
+    }
+
+    private static List<String> itemsAt(List<String> transactions, int[] indices) {
+        List<String> items = new ArrayList<>();
+        for (int index : indices) {
+            items.add(transactions.get(index));
+        }
+        return items;
+    }
+
+    // Encodes a multiproof by hand: raw gaps, and siblingCount zero digests to match the count.
+    private static byte[] wire(int leafCount, int[] gaps, int siblingCount) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write('M');
+        out.write('P');
+        out.write(1);
+        out.write(MerkleEngine.Mode.RAW.ordinal());
+        varint(out, leafCount);
+        varint(out, gaps.length);
+        for (int gap : gaps) {
+            varint(out, gap);
+        }
+        varint(out, siblingCount);
+        out.writeBytes(new byte[siblingCount * MerkleEngine.HASH_LENGTH]);
+        return out.toByteArray();
+    }
+
+    private static void varint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
@@ -0,0 +1,69 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MerkleStreamBuilderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void streamedRootMatchesEngineAtEverySize() {
+        for (MerkleEngine.Mode mode : MerkleEngine.Mode.values()) {
+            MerkleStreamBuilder builder = new MerkleStreamBuilder(mode);
+            assertNull(builder.root());
+            List<String> items = new ArrayList<>();
+            for (int n = 1; n <= 300; n++) {
+                items.add("Tx" + n);
+                builder.add("Tx" + n);
+                // root() leaves the frontier alone, so it can be asked for after every item.
+                assertArrayEquals(new MerkleEngine(mode).root(items), builder.root(), mode + " n=" + n);
+            }
+        }
+    }
+
+    @Test
+    void linesFromStreamsAndFilesAreItems() throws IOException {
+        List<String> items = List.of("TxA", "", "TxC", "Tx D", "TxE");
+        byte[] expected = new MerkleEngine(MerkleEngine.Mode.HEX_COMPAT).root(items);
+        // Windows line endings and a missing final newline give the same items.
+        for (String text : new String[] { "TxA\n\nTxC\nTx D\nTxE\n", "TxA\r\n\r\nTxC\r\nTx D\r\nTxE" }) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            assertArrayEquals(expected, MerkleStreamBuilder.rootOfLines(new ByteArrayInputStream(bytes), MerkleEngine.Mode.HEX_COMPAT));
+            Path file = Files.write(dir.resolve("items.txt"), bytes);
+            assertArrayEquals(expected, MerkleStreamBuilder.rootOfFile(file, MerkleEngine.Mode.HEX_COMPAT));
+        }
+    }
+
+    @Test
+    void emptyInputHasNoRoot() throws IOException {
+        Path file = Files.write(dir.resolve("empty.txt"), new byte[0]);
+        assertNull(MerkleStreamBuilder.rootOfFile(file, MerkleEngine.Mode.RAW));
+        assertNull(MerkleStreamBuilder.rootOfLines(new ByteArrayInputStream(new byte[0]), MerkleEngine.Mode.RAW));
+    }
+
+    @Test
+    void otherAlgorithmsMatchTheEngine() throws IOException {
+        List<String> items = List.of("a", "b", "c");
+        Path file = Files.write(dir.resolve("abc.txt"), "a\nb\nc\n".getBytes(StandardCharsets.UTF_8));
+        for (Hashing.Algorithm algorithm : Hashing.Algorithm.values()) {
+            byte[] expected = new MerkleEngine(MerkleEngine.Mode.RAW, algorithm).root(items);
+            assertArrayEquals(expected, MerkleStreamBuilder.rootOfFile(file, MerkleEngine.Mode.RAW, algorithm), algorithm.label());
+            try (InputStream in = Files.newInputStream(file)) {
+                assertArrayEquals(expected, MerkleStreamBuilder.rootOfLines(in, MerkleEngine.Mode.RAW, algorithm), algorithm.label());
+            }
+            assertArrayEquals(expected, MerkleStreamBuilder.root(items.iterator(), MerkleEngine.Mode.RAW, algorithm), algorithm.label());
+        }
+    }
+}
@@ -0,0 +1,193 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MerkleTreeFileTest {
+
+    private static final long WAL_MAGIC = 0x4d524b4c57414c31L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void growsAcrossCapacityDoublingsAndMatchesTheInMemoryTree() throws IOException {
+        for (MerkleEngine.Mode mode : MerkleEngine.Mode.values()) {
+            Path path = dir.resolve(mode + ".tree");
+            FlatMerkleTree expected = new FlatMerkleTree(mode);
+            MerkleTreeFile tree = MerkleTreeFile.create(path, mode, 2);
+            try {
+                for (int n = 1; n <= 200; n++) {
+                    tree.append("Tx" + n);
+                    expected.append("Tx" + n);
+                    assertArrayEquals(expected.root(), tree.root(), mode + " n=" + n);
+                }
+                assertEquals(256, tree.capacity());
+
+                // A batch that needs more than one doubling at once.
+                List<String> batch = new ArrayList<>();
+                for (int n = 201; n <= 700; n++) {
+                    batch.add("Tx" + n);
+                    expected.append("Tx" + n);
+                }
+                assertEquals(200, tree.appendAll(batch));
+                assertEquals(1024, tree.capacity());
+                assertArrayEquals(expected.root(), tree.root());
+                assertFalse(Files.exists(path.resolveSibling(path.getFileName() + ".grow")));
+            } finally {
+                tree.close();
+            }
+
+            tree = MerkleTreeFile.open(path);
+            try {
+                assertEquals(700, tree.size());
+                assertArrayEquals(expected.root(), tree.root());
+                for (int i = 0; i < 700; i += 37) {
+                    assertArrayEquals(expected.proofDigests(i), tree.proofDigests(i));
+                }
+            } finally {
+                tree.close();
+            }
+        }
+    }
+
+    @Test
+    void updatesMatchAFullRebuild() throws IOException {
+        List<String> items = FlatMerkleTreeTest.items(37);
+        MerkleTreeFile tree = MerkleTreeFile.create(dir.resolve("update.tree"), FlatMerkleTree.build(items, MerkleEngine.Mode.HEX_COMPAT));
+        try {
+            for (int i = 0; i < items.size(); i += 5) {
+                items.set(i, "Changed" + i);
+                tree.update(i, "Changed" + i);
+                assertEquals(MerkleTree.buildMerkleRoot(items), tree.rootHex());
+            }
+            for (int i = 0; i < items.size(); i++) {
+                assertTrue(MerkleTree.verifyMerkleProof(items.get(i), tree.proofFor(i), tree.rootHex()));
+            }
+            assertThrows(IndexOutOfBoundsException.class, () -> tree.update(37, "x"));
+        } finally {
+            tree.close();
+        }
+    }
+
+    @Test
+    void completeLogIsReplayed() throws IOException {
+        Path path = writeFiveLeaves();
+        FlatMerkleTree after = FlatMerkleTree.build(FlatMerkleTreeTest.items(7), MerkleEngine.Mode.RAW);
+        Files.write(wal(path), log(after));
+
+        MerkleTreeFile tree = MerkleTreeFile.open(path);
+        try {
+            assertEquals(7, tree.size());
+            assertArrayEquals(after.root(), tree.root());
+            assertFalse(Files.exists(wal(path)));
+        } finally {
+            tree.close();
+        }
+    }
+
+    @Test
+    void tornOrCorruptLogIsDiscarded() throws IOException {
+        Path path = writeFiveLeaves();
+        byte[] before = FlatMerkleTree.build(FlatMerkleTreeTest.items(5), MerkleEngine.Mode.RAW).root();
+        byte[] log = log(FlatMerkleTree.build(FlatMerkleTreeTest.items(7), MerkleEngine.Mode.RAW));
+        byte[] flipped = log.clone();
+        flipped[30] ^= 1;
+
+        for (byte[] leftover : new byte[][] { Arrays.copyOf(log, log.length - 1), Arrays.copyOf(log, 40), flipped, new byte[0] }) {
+            Files.write(wal(path), leftover);
+            MerkleTreeFile tree = MerkleTreeFile.open(path);
+            try {
+                assertEquals(5, tree.size());
+                assertArrayEquals(before, tree.root());
+                assertFalse(Files.exists(wal(path)));
+            } finally {
+                tree.close();
+            }
+        }
+    }
+
+    @Test
+    void openRejectsCorruptHeaders() throws IOException {
+        Path path = writeFiveLeaves();
+        byte[] good = Files.readAllBytes(path);
+        // mode ordinal, leaf count past capacity, capacity not a power of two, capacity too large
+        int[][] corruptions = { { 12, 99 }, { 32, 1000 }, { 40, 6 }, { 40, 1 << 30 } };
+        for (int[] corruption : corruptions) {
+            byte[] bad = good.clone();
+            ByteBuffer header = ByteBuffer.wrap(bad);
+            if (corruption[0] == 12) {
+                header.putInt(12, corruption[1]);
+            } else {
+                header.putLong(corruption[0], corruption[1]);
+            }
+            Files.write(path, bad);
+            assertThrows(IOException.class, () -> MerkleTreeFile.open(path), "offset " + corruption[0]);
+        }
+        Files.write(path, Arrays.copyOf(good, good.length - 32));
+        assertThrows(IOException.class, () -> MerkleTreeFile.open(path));
+        Files.write(path, Arrays.copyOf(good, 10));
+        assertThrows(IOException.class, () -> MerkleTreeFile.open(path));
+    }
+
+    @Test
+    void maximumCapacityCanBeCreatedAndUsed() throws IOException {
+        Path path = dir.resolve("max.tree");
+        MerkleTreeFile tree = MerkleTreeFile.create(path, MerkleEngine.Mode.RAW, 1L << 25);
+        try {
+            assertEquals(1L << 25, tree.capacity());
+            tree.appendAll(List.of("a", "b", "c"));
+            assertArrayEquals(new MerkleEngine(MerkleEngine.Mode.RAW).root(List.of("a", "b", "c")), tree.root());
+        } finally {
+            tree.close();
+        }
+        Files.delete(path);
+
+        Path tooBig = dir.resolve("too-big.tree");
+        assertThrows(IOException.class, () -> MerkleTreeFile.create(tooBig, MerkleEngine.Mode.RAW, (1L << 25) + 1));
+        assertFalse(Files.exists(tooBig));
+    }
+
+    private Path writeFiveLeaves() throws IOException {
+        Path path = dir.resolve("wal.tree");
+        MerkleTreeFile.create(path, FlatMerkleTree.build(FlatMerkleTreeTest.items(5), MerkleEngine.Mode.RAW)).close();
+        return path;
+    }
+
+    private static Path wal(Path path) {
+        return path.resolveSibling(path.getFileName() + ".wal");
+    }
+
+    // A log as commit writes it: magic, new leaf count, entries of (level << 58 | index, digest),
+    // then a CRC32 of everything before it. This one rewrites every node of the target tree.
+    private static byte[] log(FlatMerkleTree target) {
+        List<long[]> keys = new ArrayList<>();
+        for (int level = 0; level < target.levelCount(); level++) {
+            for (int index = 0; index < target.levelSize(level); index++) {
+                keys.add(new long[] { level, index });
+            }
+        }
+        ByteBuffer log = ByteBuffer.allocate(20 + keys.size() * 40 + 8);
+        log.putLong(WAL_MAGIC).putLong(target.size()).putInt(keys.size());
+        for (long[] key : keys) {
+            log.putLong(key[0] << 58 | key[1]).put(target.node((int) key[0], (int) key[1]));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(log.array(), 0, log.position());
+        log.putLong(crc.getValue());
+        return log.array();
+    }
+}
@@ -0,0 +1,135 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the byte-oriented engine against the String-hex implementation both Merkle classes
+ * had before it, kept here as the reference.
+ */
+class MerkleTreeTest {
+
+    private static final int[] SIZES = { 0, 1, 2, 3, 5, 8, 1000 };
+
+    @Test
+    void rootsMatchTheHexStringImplementation() {
+        for (int size : SIZES) {
+            List<String> items = items(size);
+            String expected = referenceRoot(items);
+            assertEquals(expected, MerkleTree.buildMerkleRoot(items), size + " items");
+            assertEquals(expected, MerkleTreeConstructor.buildMerkleRoot(items), size + " items");
+            assertEquals(expected, MerkleEngine.toHex(new MerkleEngine(MerkleEngine.Mode.HEX_COMPAT).root(items)), size + " items");
+        }
+        assertNull(MerkleTree.buildMerkleRoot(null));
+        assertNull(MerkleTreeConstructor.buildMerkleRoot(null));
+    }
+
+    @Test
+    void proofsMatchTheHexStringImplementation() {
+        for (int size : SIZES) {
+            if (size == 0) continue;
+            List<String> items = items(size);
+            String root = referenceRoot(items);
+            // Every leaf of the small trees; every 37th of the large one, which ends on leaf 999.
+            for (int i = 0; i < size; i += size > 100 ? 37 : 1) {
+                List<MerkleTree.ProofNode> proof = MerkleTree.generateMerkleProof(items, items.get(i));
+                List<MerkleTree.ProofNode> expected = referenceProof(items, i);
+                assertEquals(expected.size(), proof.size());
+                for (int level = 0; level < proof.size(); level++) {
+                    assertEquals(expected.get(level).hash, proof.get(level).hash);
+                    assertEquals(expected.get(level).position, proof.get(level).position);
+                }
+                assertTrue(MerkleTree.verifyMerkleProof(items.get(i), proof, root));
+                assertTrue(referenceVerify(items.get(i), proof, root));
+                assertFalse(MerkleTree.verifyMerkleProof(items.get(i) + "!", proof, root));
+            }
+        }
+        assertNull(MerkleTree.generateMerkleProof(items(5), "not there"));
+    }
+
+    // Includes multi-byte characters, so the UTF-8 encoding of leaves is covered too.
+    private static List<String> items(int count) {
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(i % 3 == 0 ? "Tx" + i + " é€" : "Tx" + i);
+        }
+        return items;
+    }
+
+    // --- The original String implementation ---
+
+    private static String referenceRoot(List<String> items) {
+        if (items.isEmpty()) return null;
+        List<String> level = leafLevel(items);
+        while (level.size() > 1) {
+            level = nextLevel(level);
+        }
+        return level.get(0);
+    }
+
+    private static List<MerkleTree.ProofNode> referenceProof(List<String> items, int index) {
+        List<MerkleTree.ProofNode> proof = new ArrayList<>();
+        List<String> level = leafLevel(items);
+        while (level.size() > 1) {
+            if (index % 2 == 0) {
+                String sibling = index + 1 < level.size() ? level.get(index + 1) : level.get(index);
+                proof.add(new MerkleTree.ProofNode(sibling, MerkleTree.ProofNode.Position.RIGHT));
+            } else {
+                proof.add(new MerkleTree.ProofNode(level.get(index - 1), MerkleTree.ProofNode.Position.LEFT));
+            }
+            level = nextLevel(level);
+            index /= 2;
+        }
+        return proof;
+    }
+
+    private static boolean referenceVerify(String item, List<MerkleTree.ProofNode> proof, String root) {
+        String computed = sha256Hex(item);
+        for (MerkleTree.ProofNode node : proof) {
+            computed = node.position == MerkleTree.ProofNode.Position.LEFT
+                    ? sha256Hex(node.hash + computed) : sha256Hex(computed + node.hash);
+        }
+        return computed.equals(root);
+    }
+
+    private static List<String> leafLevel(List<String> items) {
+        List<String> level = new ArrayList<>();
+        for (String item : items) {
+            level.add(sha256Hex(item));
+        }
+        return level;
+    }
+
+    private static List<String> nextLevel(List<String> level) {
+        List<String> next = new ArrayList<>();
+        for (int i = 0; i < level.size(); i += 2) {
+            String left = level.get(i);
+            String right = i + 1 < level.size() ? level.get(i + 1) : left;
+            next.add(sha256Hex(left + right));
+        }
+        return next;
+    }
+
+    private static String sha256Hex(String input) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(input.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(2 * hash.length);
+            for (byte b : hash) {
+                String digit = Integer.toHexString(0xff & b);
+                if (digit.length() == 1) hex.append('0');
+                hex.append(digit);
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+import org.junit.jupiter.api.Test;
+
+class PreImageAttackDemoTest {
+
+    // The SHA-256 digest of the candidate at this index.
+    static byte[] digestOf(long index) {
+        byte[] digits = new byte[16];
+        byte[] candidate = new byte[16];
+        int length = PreImageAttackDemo.setCandidate(index, digits, candidate);
+        byte[] input = new byte[length];
+        System.arraycopy(candidate, 0, input, 0, length);
+        return Hashing.hash(Hashing.Algorithm.SHA_256, input);
+    }
+
+    @Test
+    void setCandidateMatchesGenerateSystematicString() {
+        byte[] digits = new byte[16];
+        byte[] candidate = new byte[16];
+        for (long index : new long[] { 0, 1, 93, 94, 95, 8_835, 8_836, 830_583, 830_584, 123_456_789, Long.MAX_VALUE }) {
+            int length = PreImageAttackDemo.setCandidate(index, digits, candidate);
+            assertEquals(PreImageAttackDemo.generateSystematicString(index), ascii(candidate, length));
+        }
+    }
+
+    @Test
+    void nextCandidateWalksTheSameSequence() {
+        byte[] digits = new byte[16];
+        byte[] candidate = new byte[16];
+        int length = PreImageAttackDemo.setCandidate(0, digits, candidate);
+        for (long index = 0; index < 900_000; index++) {
+            assertEquals(PreImageAttackDemo.generateSystematicString(index), ascii(candidate, length), "index " + index);
+            length = PreImageAttackDemo.nextCandidate(digits, candidate, length);
+        }
+    }
+
+    @Test
+    void nextCandidateRollsOverIntoALongerString() {
+        byte[] digits = new byte[16];
+        byte[] candidate = new byte[16];
+        long base = PreImageAttackDemo.CHARSET.length();
+        int length = PreImageAttackDemo.setCandidate(base - 1, digits, candidate);
+        assertEquals("`", ascii(candidate, length));
+        length = PreImageAttackDemo.nextCandidate(digits, candidate, length);
+        assertEquals("ba", ascii(candidate, length));
+
+        length = PreImageAttackDemo.setCandidate(base * base - 1, digits, candidate);
+        assertEquals("``", ascii(candidate, length));
+        length = PreImageAttackDemo.nextCandidate(digits, candidate, length);
+        assertEquals("baa", ascii(candidate, length));
+    }
+
+    @Test
+    void findsEveryTargetWithOneOrManyThreads() throws Exception {
+        for (int threads : new int[] { 1, 4 }) {
+            DigestSet targets = new DigestSet(3, 32, false);
+            targets.add(digestOf(95));
+            targets.add(digestOf(54_321));
+            targets.add(digestOf(99_999));
+            PreImageAttackDemo.SearchResult result = PreImageAttackDemo.parallelSearch(targets, 100_000, threads);
+            assertArrayEquals(new long[] { 95, 54_321, 99_999 }, result.foundIndexes);
+            assertEquals(threads, result.workerAttempts.length);
+        }
+    }
+
+    @Test
+    void searchesTheWholeRangeWhenNothingMatches() throws Exception {
+        for (int threads : new int[] { 1, 3 }) {
+            DigestSet targets = new DigestSet(1, 32, false);
+            targets.add(digestOf(25_000));
+            PreImageAttackDemo.SearchResult result = PreImageAttackDemo.parallelSearch(targets, 25_000, threads);
+            assertArrayEquals(new long[] { -1 }, result.foundIndexes);
+            assertEquals(25_000, result.totalAttempts());
+        }
+    }
+
+    @Test
+    void mainRejectsBadArgumentsWithAUsageMessage() {
+        String[][] cases = {
+            { "--shard", "3" }, { "--shard", "4/4" }, { "--shard", "a/b" }, { "--threads", "0" }, { "--threads" },
+            { "--max", "-1" }, { "--max", "many" }, { "--checkpoint-every", "0" }, { "--algorithm", "md5" }, { "--fast" },
+        };
+        PrintStream err = System.err;
+        try {
+            for (String[] args : cases) {
+                ByteArrayOutputStream captured = new ByteArrayOutputStream();
+                System.setErr(new PrintStream(captured, true, StandardCharsets.UTF_8));
+                PreImageAttackDemo.main(args);
+                assertTrue(captured.toString(StandardCharsets.UTF_8).contains("Usage: java PreImageAttackDemo"), String.join(" ", args));
+            }
+        } finally {
+            System.setErr(err);
+        }
+    }
+
+    private static String ascii(byte[] candidate, int length) {
+        return new String(candidate, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    void findsAHexTarget() throws Exception {
+        String target = HexFormat.of().formatHex(digestOf(4_242));
+        PreImageAttackDemo.SearchResult result = PreImageAttackDemo.parallelSearch(target, 50_000, 2);
+        assertArrayEquals(new long[] { 4_242 }, result.foundIndexes);
+    }
+}
@@ -0,0 +1,121 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PreImageTableTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void findsEveryIndexInItsRange() throws Exception {
+        Path file = dir.resolve("table.bin");
+        PreImageTable.build(file, 1_000, 6_000, 2, 700);
+        PreImageTable table = PreImageTable.open(file);
+        try {
+            assertEquals(1_000, table.start());
+            assertEquals(6_000, table.end());
+            for (long index = 1_000; index < 6_000; index++) {
+                assertEquals(index, table.lookup(PreImageAttackDemoTest.digestOf(index)));
+            }
+            assertEquals(-1, table.lookup(PreImageAttackDemoTest.digestOf(999)));
+            assertEquals(-1, table.lookup(PreImageAttackDemoTest.digestOf(6_000)));
+        } finally {
+            table.close();
+        }
+        assertEquals(List.of(file), files());
+    }
+
+    @Test
+    void mergesInSeveralPassesWhenThereAreManyRuns() throws Exception {
+        // 130 runs of 500 is more than one pass of MERGE_FAN_IN can take.
+        Path file = dir.resolve("table.bin");
+        PreImageTable.build(file, 0, 65_000, 4, 500);
+        assertEquals(List.of(file), files());
+
+        ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(file));
+        records.position(64);
+        assertEquals(65_000 * 16, records.remaining());
+        long previous = 0;
+        long indexSum = 0;
+        while (records.hasRemaining()) {
+            long prefix = records.getLong();
+            assertTrue(Long.compareUnsigned(previous, prefix) <= 0);
+            previous = prefix;
+            indexSum += records.getLong();
+        }
+        assertEquals(65_000L * 64_999 / 2, indexSum);
+
+        PreImageTable table = PreImageTable.open(file);
+        try {
+            for (long index = 0; index < 65_000; index += 97) {
+                assertEquals(index, table.lookup(PreImageAttackDemoTest.digestOf(index)));
+            }
+        } finally {
+            table.close();
+        }
+    }
+
+    @Test
+    void rejectsATableWhoseSizeDoesNotMatchItsHeader() throws Exception {
+        Path file = dir.resolve("table.bin");
+        PreImageTable.build(file, 0, 1_000, 1, 1_000);
+        long size = Files.size(file);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 16);
+        }
+        assertThrows(IOException.class, () -> PreImageTable.open(file));
+
+        PreImageTable.build(file, 0, 1_000, 1, 1_000);
+        Files.write(file, new byte[16], StandardOpenOption.APPEND);
+        assertThrows(IOException.class, () -> PreImageTable.open(file));
+
+        Files.write(file, new byte[10]);
+        assertThrows(IOException.class, () -> PreImageTable.open(file));
+    }
+
+    @Test
+    void rejectsAnInconsistentHeader() throws Exception {
+        Path file = dir.resolve("table.bin");
+        // Header: magic, start, end, record count.
+        PreImageTable.build(file, 0, 1_000, 1, 1_000);
+        overwriteLong(file, 24, 999);
+        assertThrows(IOException.class, () -> PreImageTable.open(file));
+
+        PreImageTable.build(file, 0, 1_000, 1, 1_000);
+        overwriteLong(file, 8, 2_000);
+        overwriteLong(file, 16, 1_000);
+        overwriteLong(file, 24, -1_000);
+        assertThrows(IOException.class, () -> PreImageTable.open(file));
+
+        PreImageTable.build(file, 0, 1_000, 1, 1_000);
+        overwriteLong(file, 0, 0);
+        assertThrows(IOException.class, () -> PreImageTable.open(file));
+    }
+
+    private static void overwriteLong(Path file, long position, long value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putLong(0, value), position);
+        }
+    }
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> listing = Files.list(dir)) {
+            return listing.collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SearchCheckpointTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void shardsCoverTheKeyspaceWithoutGaps() {
+        for (long keyspace : new long[] { 0, 1, 3, 10, 1_000_003 }) {
+            for (int count : new int[] { 1, 2, 3, 7, 16 }) {
+                long expectedStart = 0;
+                for (int k = 0; k < count; k++) {
+                    long[] range = SearchCheckpoint.shardRange(keyspace, k, count);
+                    assertEquals(expectedStart, range[0]);
+                    long size = range[1] - range[0];
+                    assertTrue(size == keyspace / count || size == keyspace / count + 1);
+                    expectedStart = range[1];
+                }
+                assertEquals(keyspace, expectedStart);
+            }
+        }
+        // The first keyspace % n shards take one extra index.
+        assertArrayEquals(new long[] { 0, 4 }, SearchCheckpoint.shardRange(10, 0, 3));
+        assertArrayEquals(new long[] { 4, 7 }, SearchCheckpoint.shardRange(10, 1, 3));
+        assertArrayEquals(new long[] { 7, 10 }, SearchCheckpoint.shardRange(10, 2, 3));
+    }
+
+    @Test
+    void rejectsShardsOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> SearchCheckpoint.shardRange(100, 4, 4));
+        assertThrows(IllegalArgumentException.class, () -> SearchCheckpoint.shardRange(100, -1, 4));
+        assertThrows(IllegalArgumentException.class, () -> SearchCheckpoint.shardRange(100, 0, 0));
+    }
+
+    @Test
+    void lowWaterMarkOnlyMovesOverFinishedChunks() {
+        SearchCheckpoint checkpoint = new SearchCheckpoint(dir.resolve("c"), 0, 1, 100, 200, "SHA-256");
+        checkpoint.chunkDone(120, 130);
+        checkpoint.chunkDone(110, 120);
+        assertEquals(100, checkpoint.next());
+        checkpoint.chunkDone(100, 110);
+        assertEquals(130, checkpoint.next());
+        checkpoint.chunkDone(150, 160);
+        checkpoint.chunkDone(130, 140);
+        assertEquals(140, checkpoint.next());
+        checkpoint.chunkDone(140, 150);
+        assertEquals(160, checkpoint.next());
+    }
+
+    @Test
+    void resumesFromASavedCheckpoint() throws IOException {
+        Path file = dir.resolve("search.ckpt");
+        SearchCheckpoint checkpoint = SearchCheckpoint.open(file, 1, 4, 250, 500, "SHA-256");
+        assertEquals(250, checkpoint.next());
+        checkpoint.chunkDone(250, 300);
+        checkpoint.chunkDone(350, 400);
+        byte[] digest = PreImageAttackDemoTest.digestOf(260);
+        checkpoint.recordFound(digest, 260);
+        checkpoint.save();
+
+        SearchCheckpoint resumed = SearchCheckpoint.open(file, 1, 4, 250, 500, "SHA-256");
+        assertEquals(300, resumed.next());
+        assertEquals(Map.of(HexFormat.of().formatHex(digest), 260L), resumed.found());
+        assertTrue(Files.notExists(dir.resolve("search.ckpt.tmp")));
+    }
+
+    @Test
+    void resumedSearchSkipsTheSearchedPartAndKeepsEarlierFinds() throws Exception {
+        Path file = dir.resolve("search.ckpt");
+        DigestSet targets = new DigestSet(2, 32, false);
+        targets.add(PreImageAttackDemoTest.digestOf(500));
+        targets.add(PreImageAttackDemoTest.digestOf(60_000));
+
+        SearchCheckpoint first = SearchCheckpoint.open(file, 0, 1, 0, 30_000, "SHA-256");
+        PreImageAttackDemo.SearchResult partial = PreImageAttackDemo.parallelSearch(targets, 0, 30_000, 2, first, 60_000);
+        assertArrayEquals(new long[] { 500, -1 }, partial.foundIndexes);
+
+        // Continue the same shard from where it stopped, as a restarted run would.
+        SearchCheckpoint second = SearchCheckpoint.open(file, 0, 1, 0, 30_000, "SHA-256");
+        assertEquals(30_000, second.next());
+        PreImageAttackDemo.SearchResult resumed = PreImageAttackDemo.parallelSearch(targets, 0, 30_000, 2, second, 60_000);
+        assertEquals(0, resumed.totalAttempts());
+        assertArrayEquals(new long[] { 500, -1 }, resumed.foundIndexes);
+    }
+
+    @Test
+    void rejectsACheckpointForAnotherShardOrAlgorithm() throws IOException {
+        Path file = dir.resolve("search.ckpt");
+        SearchCheckpoint.open(file, 1, 4, 250, 500, "SHA-256").save();
+        assertThrows(IOException.class, () -> SearchCheckpoint.open(file, 2, 4, 500, 750, "SHA-256"));
+        assertThrows(IOException.class, () -> SearchCheckpoint.open(file, 1, 4, 250, 501, "SHA-256"));
+        assertThrows(IOException.class, () -> SearchCheckpoint.open(file, 1, 4, 250, 500, "SHA3-256"));
+    }
+
+    @Test
+    void olderCheckpointsWithoutAnAlgorithmAreSha256() throws IOException {
+        Path file = dir.resolve("old.ckpt");
+        Files.write(file, List.of("shard=0/1", "start=0", "end=1000", "next=400"));
+        assertEquals(400, SearchCheckpoint.open(file, 0, 1, 0, 1000, "SHA-256").next());
+        assertThrows(IOException.class, () -> SearchCheckpoint.open(file, 0, 1, 0, 1000, "SHA-512/256"));
+    }
+
+    @Test
+    void rejectsProgressOutsideTheShard() throws IOException {
+        Path file = dir.resolve("bad.ckpt");
+        Files.write(file, List.of("shard=0/1", "start=0", "end=1000", "algorithm=SHA-256", "next=1001"));
+        assertThrows(IOException.class, () -> SearchCheckpoint.open(file, 0, 1, 0, 1000, "SHA-256"));
+        Files.write(file, List.of("shard=0/1", "start=0", "end=1000", "algorithm=SHA-256", "next=-1"));
+        assertThrows(IOException.class, () -> SearchCheckpoint.open(file, 0, 1, 0, 1000, "SHA-256"));
+        Files.write(file, List.of("shard=0/1", "start=0", "end=1000", "algorithm=SHA-256"));
+        assertThrows(IOException.class, () -> SearchCheckpoint.open(file, 0, 1, 0, 1000, "SHA-256"));
+        Files.write(file, List.of("shard=0/1", "start=0", "end=1000", "algorithm=SHA-256", "next=lots"));
+        assertThrows(IOException.class, () -> SearchCheckpoint.open(file, 0, 1, 0, 1000, "SHA-256"));
+        Files.write(file, List.of("shard=0/1", "start=0", "end=1000", "algorithm=SHA-256", "next=10", "found=00 5000"));
+        assertThrows(IOException.class, () -> SearchCheckpoint.open(file, 0, 1, 0, 1000, "SHA-256"));
+    }
+}
@@ -0,0 +1,105 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SignaturePipelineTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void signsAndVerifiesEveryLineOfAFile() throws Exception {
+        // 200 lines is three full batches and a partial one.
+        Path file = dir.resolve("messages.txt");
+        List<String> lines = new ArrayList<>();
+        Iterator<String> generated = SignaturePipeline.syntheticMessages(200);
+        while (generated.hasNext()) {
+            lines.add(generated.next());
+        }
+        lines.set(7, "é€ and other UTF-8");
+        Files.write(file, lines, StandardCharsets.UTF_8);
+
+        SignatureScheme scheme = SignatureScheme.ED25519;
+        for (int threads : new int[] { 1, 4 }) {
+            SignaturePipeline pipeline = new SignaturePipeline(scheme, scheme.generateKeyPair(), threads);
+            // Every worker must stop at its end marker, or run() never returns.
+            SignaturePipeline.Report report = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    return pipeline.run(reader.lines().iterator());
+                }
+            });
+            assertEquals(200, report.messages, threads + " threads");
+            assertEquals(0, report.failures, threads + " threads");
+            assertTrue(report.signPercentile(50) > 0 && report.signPercentile(50) <= report.signPercentile(99));
+            assertTrue(report.verifyPercentile(50) > 0 && report.verifyPercentile(50) <= report.verifyPercentile(99));
+        }
+    }
+
+    @Test
+    void emptyInputStillShutsDownEveryWorker() throws Exception {
+        SignatureScheme scheme = SignatureScheme.ED25519;
+        for (int threads : new int[] { 1, 8 }) {
+            SignaturePipeline pipeline = new SignaturePipeline(scheme, scheme.generateKeyPair(), threads);
+            SignaturePipeline.Report report = assertTimeoutPreemptively(Duration.ofSeconds(30),
+                    () -> pipeline.run(Collections.emptyIterator()));
+            assertEquals(0, report.messages);
+            assertEquals(0, report.signPercentile(99));
+        }
+    }
+
+    @Test
+    void histogramPercentilesAreWithinOneSixteenth() {
+        SignaturePipeline.Histogram histogram = new SignaturePipeline.Histogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.add(nanos);
+        }
+        assertEquals(100_000, histogram.count());
+        for (double p : new double[] { 1, 50, 90, 99, 100 }) {
+            long exact = (long) Math.ceil(p / 100 * 100_000);
+            long reported = histogram.percentile(p);
+            assertTrue(reported <= exact && exact - reported <= exact / 16, p + ": " + reported + " vs " + exact);
+        }
+
+        // Every bucket starts where the one before it ends, up to Long.MAX_VALUE.
+        for (int b = 1; b < SignaturePipeline.Histogram.BUCKETS; b++) {
+            long lowest = SignaturePipeline.Histogram.lowestValue(b);
+            assertEquals(b, SignaturePipeline.Histogram.bucket(lowest));
+            assertEquals(b - 1, SignaturePipeline.Histogram.bucket(lowest - 1));
+        }
+        assertEquals(SignaturePipeline.Histogram.BUCKETS - 1, SignaturePipeline.Histogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    void mainRejectsBadArgumentsWithAUsageMessage() throws Exception {
+        String[][] cases = {
+            { "--fast" }, { "--threads", "0" }, { "--threads" }, { "--count", "-5" }, { "--count", "lots" },
+            { "--scheme", "dsa" }, { "a.txt", "b.txt" },
+        };
+        PrintStream err = System.err;
+        try {
+            for (String[] args : cases) {
+                ByteArrayOutputStream captured = new ByteArrayOutputStream();
+                System.setErr(new PrintStream(captured, true, StandardCharsets.UTF_8));
+                SignaturePipeline.main(args);
+                assertTrue(captured.toString(StandardCharsets.UTF_8).contains("Usage: java SignaturePipeline"), String.join(" ", args));
+            }
+        } finally {
+            System.setErr(err);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.EdECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class SignatureSchemeTest {
+
+    private static final byte[] MESSAGE = "Transfer 10 from account-1 to account-2".getBytes(StandardCharsets.UTF_8);
+
+    // Two key pairs per scheme, made once: RSA-4096 key generation takes a while.
+    private static final Map<SignatureScheme, KeyPair[]> KEYS = new EnumMap<>(SignatureScheme.class);
+
+    @BeforeAll
+    static void generateKeys() throws Exception {
+        for (SignatureScheme scheme : SignatureScheme.values()) {
+            KEYS.put(scheme, new KeyPair[] { scheme.generateKeyPair(), scheme.generateKeyPair() });
+        }
+    }
+
+    @Test
+    void everySchemeSignsAndVerifies() throws Exception {
+        for (SignatureScheme scheme : SignatureScheme.values()) {
+            KeyPair keyPair = KEYS.get(scheme)[0];
+            Signature signer = scheme.signer(keyPair);
+            Signature verifier = scheme.verifier(keyPair.getPublic());
+            // Twice, since the pipelines reuse one Signature for every message.
+            for (int round = 0; round < 2; round++) {
+                signer.update(MESSAGE);
+                byte[] signature = signer.sign();
+                verifier.update(MESSAGE);
+                assertTrue(verifier.verify(signature), scheme.label());
+            }
+        }
+    }
+
+    @Test
+    void everySchemeRejectsATamperedMessageOrSignature() throws Exception {
+        for (SignatureScheme scheme : SignatureScheme.values()) {
+            KeyPair keyPair = KEYS.get(scheme)[0];
+            Signature signer = scheme.signer(keyPair.getPrivate());
+            signer.update(MESSAGE);
+            byte[] signature = signer.sign();
+
+            Signature verifier = scheme.verifier(keyPair);
+            byte[] tampered = MESSAGE.clone();
+            tampered[9] ^= 1;
+            verifier.update(tampered);
+            assertFalse(verifier.verify(signature), scheme.label());
+
+            byte[] badSignature = signature.clone();
+            badSignature[badSignature.length / 2] ^= 1;
+            verifier.update(MESSAGE);
+            boolean accepted;
+            try {
+                accepted = verifier.verify(badSignature);
+            } catch (SignatureException e) {
+                accepted = false; // a malformed ECDSA encoding is thrown out, not just rejected
+            }
+            assertFalse(accepted, scheme.label());
+
+            // Another key pair of the same scheme does not verify it either.
+            Signature otherVerifier = scheme.verifier(KEYS.get(scheme)[1]);
+            otherVerifier.update(MESSAGE);
+            assertFalse(otherVerifier.verify(signature), scheme.label());
+        }
+    }
+
+    @Test
+    void keysHaveTheSchemesSize() throws Exception {
+        for (SignatureScheme scheme : new SignatureScheme[] { SignatureScheme.RSA_2048, SignatureScheme.RSA_3072, SignatureScheme.RSA_4096 }) {
+            RSAPublicKey key = (RSAPublicKey) KEYS.get(scheme)[0].getPublic();
+            assertEquals(scheme.keyBits(), key.getModulus().bitLength());
+        }
+        ECPublicKey ec = (ECPublicKey) KEYS.get(SignatureScheme.ECDSA_P256)[0].getPublic();
+        assertEquals(SignatureScheme.ECDSA_P256.keyBits(), ec.getParams().getOrder().bitLength());
+        EdECPublicKey ed = (EdECPublicKey) KEYS.get(SignatureScheme.ED25519)[0].getPublic();
+        assertEquals("Ed25519", ed.getParams().getName());
+        assertEquals(255, SignatureScheme.ED25519.keyBits());
+    }
+
+    @Test
+    void labelsAreCaseInsensitive() {
+        assertEquals(SignatureScheme.ED25519, SignatureScheme.fromLabel("Ed25519"));
+        assertEquals(SignatureScheme.ECDSA_P256, SignatureScheme.fromLabel("ecdsa-p256"));
+        assertThrows(IllegalArgumentException.class, () -> SignatureScheme.fromLabel("dsa"));
+    }
+}
@@ -0,0 +1,132 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class SignedMerkleBatcherTest {
+
+    private static final SignatureScheme SCHEME = SignatureScheme.ED25519;
+    private static KeyPair keyPair;
+
+    @BeforeAll
+    static void generateKeys() throws Exception {
+        keyPair = SCHEME.generateKeyPair();
+    }
+
+    @Test
+    void everyReceiptVerifiesWithOneSignatureCheckPerBatch() throws Exception {
+        // 10 messages in batches of at most 4: two full batches and one cut short by close().
+        List<SignedMerkleBatcher.Receipt> receipts = sign(10, 4);
+        SignedMerkleBatcher.Verifier verifier = new SignedMerkleBatcher.Verifier(SCHEME, keyPair.getPublic());
+        for (int i = 0; i < receipts.size(); i++) {
+            SignedMerkleBatcher.Receipt receipt = receipts.get(i);
+            assertEquals("message " + i, receipt.message);
+            assertEquals(i % 4, receipt.leafIndex);
+            assertEquals(i < 8 ? 4 : 2, receipt.leafCount);
+            assertTrue(verifier.verify(receipt), "message " + i);
+        }
+        assertEquals(3, verifier.signatureChecks());
+    }
+
+    @Test
+    void rejectsAShortenedLengthenedOrForgedProof() throws Exception {
+        SignedMerkleBatcher.Receipt receipt = sign(8, 8).get(5);
+        SignedMerkleBatcher.Verifier verifier = new SignedMerkleBatcher.Verifier(SCHEME, keyPair.getPublic());
+        assertTrue(verifier.verify(receipt));
+
+        byte[] siblings = receipt.siblings;
+        assertFalse(verifier.verify(withSiblings(receipt, Arrays.copyOf(siblings, siblings.length - 32))));
+        assertFalse(verifier.verify(withSiblings(receipt, Arrays.copyOf(siblings, siblings.length + 32))));
+        assertFalse(verifier.verify(withSiblings(receipt, new byte[0])));
+        byte[] forged = siblings.clone();
+        forged[40] ^= 1;
+        assertFalse(verifier.verify(withSiblings(receipt, forged)));
+        assertFalse(verifier.verify(new SignedMerkleBatcher.Receipt("message 6", receipt.leafIndex, siblings,
+                receipt.root, receipt.leafCount, receipt.rootSignature)));
+    }
+
+    @Test
+    void rejectsALeafIndexOutsideTheBatch() throws Exception {
+        // In a batch of 5, leaf 4 is paired with itself on the first two levels, so its proof
+        // also hashes to the root from index 5, 6 or 7; none of those leaves exists.
+        SignedMerkleBatcher.Receipt receipt = sign(5, 5).get(4);
+        SignedMerkleBatcher.Verifier verifier = new SignedMerkleBatcher.Verifier(SCHEME, keyPair.getPublic());
+        assertTrue(verifier.verify(receipt));
+        for (long index : new long[] { 5, 6, 7, -1, -4, Long.MIN_VALUE }) {
+            assertFalse(verifier.verify(withIndex(receipt, index)), "index " + index);
+        }
+        assertFalse(verifier.verify(withIndex(receipt, 3)));
+    }
+
+    @Test
+    void rejectsATamperedLeafCount() throws Exception {
+        SignedMerkleBatcher.Receipt receipt = sign(8, 8).get(2);
+        // 7 leaves make a tree of the same height, so only the signature can catch it; use a
+        // verifier that has not seen this root yet.
+        SignedMerkleBatcher.Verifier verifier = new SignedMerkleBatcher.Verifier(SCHEME, keyPair.getPublic());
+        assertFalse(verifier.verify(withLeafCount(receipt, 7)));
+        assertFalse(verifier.verify(withLeafCount(receipt, 9)));
+        assertFalse(verifier.verify(withLeafCount(receipt, 0)));
+        assertTrue(verifier.verify(receipt));
+        assertFalse(verifier.verify(withLeafCount(receipt, 7)));
+    }
+
+    @Test
+    void rejectsATamperedRootOrSignature() throws Exception {
+        SignedMerkleBatcher.Receipt receipt = sign(8, 8).get(0);
+        SignedMerkleBatcher.Verifier verifier = new SignedMerkleBatcher.Verifier(SCHEME, keyPair.getPublic());
+
+        byte[] signature = receipt.rootSignature.clone();
+        signature[10] ^= 1;
+        assertFalse(verifier.verify(new SignedMerkleBatcher.Receipt(receipt.message, receipt.leafIndex, receipt.siblings,
+                receipt.root, receipt.leafCount, signature)));
+        assertFalse(verifier.verify(new SignedMerkleBatcher.Receipt(receipt.message, receipt.leafIndex, receipt.siblings,
+                receipt.root, receipt.leafCount, new byte[0])));
+
+        byte[] root = receipt.root.clone();
+        root[0] ^= 1;
+        assertFalse(verifier.verify(new SignedMerkleBatcher.Receipt(receipt.message, receipt.leafIndex, receipt.siblings,
+                root, receipt.leafCount, receipt.rootSignature)));
+
+        // A receipt signed with someone else's key.
+        SignedMerkleBatcher.Verifier otherKey = new SignedMerkleBatcher.Verifier(SCHEME, SCHEME.generateKeyPair().getPublic());
+        assertFalse(otherKey.verify(receipt));
+        assertTrue(verifier.verify(receipt));
+    }
+
+    // Submits count messages and closes the batcher, which signs the last partial batch.
+    private static List<SignedMerkleBatcher.Receipt> sign(int count, int maxBatch) throws Exception {
+        List<CompletableFuture<SignedMerkleBatcher.Receipt>> futures = new ArrayList<>();
+        try (SignedMerkleBatcher batcher = new SignedMerkleBatcher(SCHEME, keyPair.getPrivate(), maxBatch, 60_000)) {
+            for (int i = 0; i < count; i++) {
+                futures.add(batcher.submit("message " + i));
+            }
+        }
+        List<SignedMerkleBatcher.Receipt> receipts = new ArrayList<>();
+        for (CompletableFuture<SignedMerkleBatcher.Receipt> future : futures) {
+            receipts.add(future.get(10, TimeUnit.SECONDS));
+        }
+        return receipts;
+    }
+
+    private static SignedMerkleBatcher.Receipt withSiblings(SignedMerkleBatcher.Receipt r, byte[] siblings) {
+        return new SignedMerkleBatcher.Receipt(r.message, r.leafIndex, siblings, r.root, r.leafCount, r.rootSignature);
+    }
+
+    private static SignedMerkleBatcher.Receipt withIndex(SignedMerkleBatcher.Receipt r, long leafIndex) {
+        return new SignedMerkleBatcher.Receipt(r.message, leafIndex, r.siblings, r.root, r.leafCount, r.rootSignature);
+    }
+
+    private static SignedMerkleBatcher.Receipt withLeafCount(SignedMerkleBatcher.Receipt r, long leafCount) {
+        return new SignedMerkleBatcher.Receipt(r.message, r.leafIndex, r.siblings, r.root, leafCount, r.rootSignature);
+    }
+}